@@ -0,0 +1,55 @@
+package algoritmo;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.Fixtures;
+
+/** Crossover and mutation of genomes the size of the Breakout and Pacman networks */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneticOperatorsBenchmark {
+
+	@Param({ Fixtures.BREAKOUT, Fixtures.PACMAN })
+	public String game;
+
+	private double[] parent1;
+	private double[] parent2;
+	private double[] child;
+	private SplittableRandom random;
+
+	@Setup
+	public void setup() {
+		parent1 = Fixtures.genome(game, Fixtures.SEED);
+		parent2 = Fixtures.genome(game, Fixtures.SEED + 1);
+		child = parent1.clone();
+		random = new SplittableRandom(Fixtures.SEED);
+	}
+
+	@Benchmark
+	public double[] crossover() {
+		return GeneticAlgorithm.crossover(parent1, parent2, random);
+	}
+
+	@Benchmark
+	public double[] mutate() {
+		GeneticAlgorithm.mutate(child, 0.1, random);
+		return child;
+	}
+}
@@ -0,0 +1,136 @@
+package algoritmo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.Fixtures;
+
+/**
+ * One forward pass of the Breakout and Pacman networks on a real game state,
+ * alone or as part of a batch of states (reported per state), and the ticks
+ * of a recorded game replayed with full or incremental hidden sums (reported
+ * per tick). The networks are dense or pruned and compressed, so these are
+ * the times of nextMove() to weigh against the fitness Pruning reports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InferenceBenchmark {
+
+	@Param({ Fixtures.BREAKOUT, Fixtures.PACMAN })
+	public String game;
+
+	// "dense" keeps the network as it is, a threshold prunes it with
+	// FeedforwardNeuralNetwork.prune, 0.0 only removing the unused inputs
+	@Param({ "dense", "0.0", "0.5", "0.9" })
+	public String pruning;
+
+	private static final int BATCH = 64;
+	private static final int TICKS = 256;
+
+	private FeedforwardNeuralNetwork network;
+	private int[] state;
+	private int[] states;
+	private int[] moves = new int[BATCH];
+	// A game played by the dense network, and the state array the replays
+	// update tick after tick like a board does
+	private int[][] ticks;
+	private int[][] changed;
+	private int[] board;
+
+	@Setup
+	public void setup() {
+		network = Fixtures.network(game, Fixtures.SEED);
+		List<int[]> changes = new ArrayList<>();
+		ticks = Fixtures.ticks(game, network, TICKS, changes);
+		changed = changes.toArray(new int[0][]);
+		board = new int[ticks[0].length];
+		if (!pruning.equals("dense"))
+			network = network.prune(Double.parseDouble(pruning), false, Fixtures.usedInputs(game));
+		state = Fixtures.state(game);
+		states = new int[BATCH * state.length];
+		for (int k = 0; k < BATCH; k++) {
+			System.arraycopy(state, 0, states, k * state.length, state.length);
+		}
+	}
+
+	@Benchmark
+	public double[] forward() {
+		return network.forward(state);
+	}
+
+	@Benchmark
+	public int nextMove() {
+		return network.nextMove(state);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int[] nextMoveEachOfBatch() {
+		for (int k = 0; k < BATCH; k++) {
+			moves[k] = network.nextMove(states, k * state.length);
+		}
+		return moves;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int[] nextMovesBatch() {
+		network.nextMoves(states, state.length, BATCH, moves);
+		return moves;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public int fullReplay() {
+		int checksum = 0;
+		for (int t = 0; t < TICKS; t++) {
+			replay(t);
+			checksum += network.nextMove(board, 0);
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public int incrementalReplay() {
+		int checksum = 0;
+		for (int t = 0; t < TICKS; t++) {
+			int[] values = replay(t);
+			checksum += network.incrementalMove(board, values, values == null ? -1 : values.length);
+		}
+		return checksum;
+	}
+
+	// Brings the board's state to tick t of the game, which starts over when it
+	// ends, and returns the values that changed
+	private int[] replay(int t) {
+		int tick = t % ticks.length;
+		int[] values = changed[tick];
+		if (values == null) {
+			System.arraycopy(ticks[tick], 0, board, 0, board.length);
+		} else {
+			for (int j : values) {
+				board[j] = ticks[tick][j];
+			}
+		}
+		return values;
+	}
+}
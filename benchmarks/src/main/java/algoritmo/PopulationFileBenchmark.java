@@ -0,0 +1,66 @@
+package algoritmo;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.Fixtures;
+import utils.BoardTypes;
+
+/**
+ * Saving and loading a population of the game GeneticAlgorithm is set to.
+ * readFile() also simulates every network it loads, as the algorithm does
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PopulationFileBenchmark {
+
+	private static final int POPULATION_SIZE = 100;
+
+	private FeedforwardNeuralNetwork[] population;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		String game = GeneticAlgorithm.BOARD_TYPE == BoardTypes.BREAKOUT ? Fixtures.BREAKOUT : Fixtures.PACMAN;
+		population = new FeedforwardNeuralNetwork[POPULATION_SIZE];
+		for (int i = 0; i < POPULATION_SIZE; i++) {
+			population[i] = Fixtures.network(game, Fixtures.SEED + i);
+		}
+		file = File.createTempFile("population", ".txt");
+		GeneticAlgorithm.writePopulation(population, file.getPath());
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public File writePopulation() {
+		GeneticAlgorithm.writePopulation(population, file.getPath());
+		return file;
+	}
+
+	@Benchmark
+	public FeedforwardNeuralNetwork[] readFile() throws FileNotFoundException {
+		return GeneticAlgorithm.readFile(file.getPath(), POPULATION_SIZE);
+	}
+}
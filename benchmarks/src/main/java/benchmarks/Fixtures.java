@@ -0,0 +1,121 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import algoritmo.FeedforwardNeuralNetwork;
+import breakout.BreakoutEngine;
+import pacman.PacmanEngine;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * Inputs shared by the benchmarks, all derived from fixed seeds so that every
+ * run measures the same work
+ */
+public final class Fixtures {
+
+	public static final long SEED = 42;
+	public static final String BREAKOUT = "BREAKOUT";
+	public static final String PACMAN = "PACMAN";
+
+	private Fixtures() {
+	}
+
+	public static int genomeSize(String game) {
+		return game.equals(BREAKOUT) ? Commons.BREAKOUT_NETWORK_SIZE : Commons.PACMAN_NETWORK_SIZE;
+	}
+
+	// Inputs a board of the game can set to something other than 0
+	public static int usedInputs(String game) {
+		return game.equals(BREAKOUT) ? Commons.BREAKOUT_STATE_SIZE : Commons.PACMAN_ENCODING.getUsedInputs();
+	}
+
+	// Weights uniformly distributed in [-1, 1), like a new network's
+	public static double[] genome(String game, long seed) {
+		Random random = new Random(seed);
+		double[] genome = new double[genomeSize(game)];
+		for (int i = 0; i < genome.length; i++) {
+			genome[i] = random.nextDouble() * 2 - 1;
+		}
+		return genome;
+	}
+
+	public static FeedforwardNeuralNetwork network(String game, long seed) {
+		return game.equals(BREAKOUT)
+				? new FeedforwardNeuralNetwork(Commons.BREAKOUT_STATE_SIZE, Commons.BREAKOUT_HIDDEN_DIM,
+						Commons.BREAKOUT_NUM_ACTIONS, genome(game, seed))
+				: new FeedforwardNeuralNetwork(Commons.PACMAN_STATE_SIZE, Commons.PACMAN_HIDDEN_DIM,
+						Commons.PACMAN_NUM_ACTIONS, genome(game, seed));
+	}
+
+	/** A controller that always plays the same move, to measure the simulator alone */
+	public static GameController fixedController(String game) {
+		int move = game.equals(BREAKOUT) ? BreakoutEngine.LEFT : PacmanEngine.LEFT;
+		return state -> move;
+	}
+
+	/** The state a board gives its controller after a few ticks of a game */
+	public static int[] state(String game) {
+		int ticks = 10;
+		int[][] captured = new int[1][];
+		if (game.equals(BREAKOUT)) {
+			BreakoutEngine[] board = new BreakoutEngine[1];
+			board[0] = new BreakoutEngine(state -> {
+				captured[0] = state.clone();
+				if (board[0].getTime() >= ticks)
+					board[0].cancel();
+				return BreakoutEngine.LEFT;
+			}, Commons.SEED);
+			board[0].setCycleDetection(false);
+			board[0].runSimulation();
+		} else {
+			PacmanEngine board = new PacmanEngine(state -> {
+				captured[0] = state.clone();
+				return PacmanEngine.LEFT;
+			}, Commons.SEED);
+			board.setBudget(ticks, Commons.PACMAN_MAX_MILLIS);
+			board.runSimulation();
+		}
+		return captured[0];
+	}
+
+	/**
+	 * The states a board gives the controller on each tick of a game, up to
+	 * count ticks, and in changed the values of each state that may have
+	 * changed since the one before it, or null when they aren't known
+	 */
+	public static int[][] ticks(String game, GameController controller, int count, List<int[]> changed) {
+		List<int[]> states = new ArrayList<>();
+		GameController recorder = new GameController() {
+			@Override
+			public int nextMove(int[] currentState) {
+				return nextMove(currentState, null, -1);
+			}
+
+			@Override
+			public int nextMove(int[] currentState, int[] changedValues, int changedCount) {
+				states.add(currentState.clone());
+				changed.add(changedCount < 0 ? null : Arrays.copyOf(changedValues, changedCount));
+				return controller.nextMove(currentState);
+			}
+		};
+		if (game.equals(BREAKOUT)) {
+			BreakoutEngine[] board = new BreakoutEngine[1];
+			board[0] = new BreakoutEngine(state -> {
+				if (board[0].getTime() >= count)
+					board[0].cancel();
+				return recorder.nextMove(state);
+			}, Commons.SEED);
+			board[0].setCycleDetection(false);
+			board[0].runSimulation();
+		} else {
+			PacmanEngine board = new PacmanEngine(recorder, Commons.SEED);
+			board.setBudget(count, Commons.PACMAN_MAX_MILLIS);
+			board.runSimulation();
+		}
+		return states.toArray(new int[0][]);
+	}
+}
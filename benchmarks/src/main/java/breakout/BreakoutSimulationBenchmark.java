@@ -0,0 +1,74 @@
+package breakout;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.Fixtures;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * A single Breakout tick and whole episodes, played by a network or by a
+ * controller that always moves left to measure the simulator alone
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BreakoutSimulationBenchmark {
+
+	@Param({ "network", "fixed" })
+	public String controller;
+
+	private GameController gameController;
+	private BreakoutEngine board;
+	private int[] start;
+
+	@Setup
+	public void setup() {
+		gameController = controller.equals("network") ? Fixtures.network(Fixtures.BREAKOUT, Fixtures.SEED)
+				: Fixtures.fixedController(Fixtures.BREAKOUT);
+		board = new BreakoutEngine(gameController, Commons.SEED);
+		start = board.snapshot();
+	}
+
+	// A finished game starts over from the same state, which is rare enough not
+	// to show in the average
+	@Benchmark
+	public int tick() {
+		if (!board.isInGame())
+			board.restore(start);
+		board.step();
+		return board.getTime();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public double runSimulation() {
+		BreakoutEngine episode = new BreakoutEngine(gameController, Commons.SEED);
+		episode.runSimulation();
+		return episode.getFitness();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public double runSimulationWithoutCycleDetection() {
+		BreakoutEngine episode = new BreakoutEngine(gameController, Commons.SEED);
+		episode.setCycleDetection(false);
+		episode.runSimulation();
+		return episode.getFitness();
+	}
+}
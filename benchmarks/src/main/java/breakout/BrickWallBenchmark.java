@@ -0,0 +1,119 @@
+package breakout;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * The cost of a Breakout tick in wall mode as the number of bricks grows, next
+ * to the cost of finding the bricks a ball overlaps with the grid and by
+ * checking every brick. The grid lookup only depends on the cells the ball
+ * overlaps, so its cost stays flat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrickWallBenchmark {
+
+	// Columns and rows of each brick count, all splitting the original wall area
+	private static final int[][] WALLS = { { 6, 5 }, { 24, 10 }, { 60, 25 }, { 120, 50 }, { 240, 50 } };
+	private static final int QUERIES = 1024;
+
+	@Param({ "30", "240", "1500", "6000", "12000" })
+	public int bricks;
+
+	private int columns;
+	private int rows;
+	private BreakoutEngine board;
+	private int[] start;
+	private BrickWall wall;
+	// Ball positions of the queries, all over the wall area
+	private final int[] queryX = new int[QUERIES];
+	private final int[] queryY = new int[QUERIES];
+	private int query;
+
+	@Setup
+	public void setup() {
+		for (int[] size : WALLS) {
+			if (size[0] * size[1] == bricks) {
+				columns = size[0];
+				rows = size[1];
+			}
+		}
+		if (columns == 0) {
+			throw new IllegalArgumentException("No wall of " + bricks + " bricks");
+		}
+		// Follows the ball, so that the episodes are long
+		GameController tracker = state -> state[0] < state[3] + 18 ? BreakoutEngine.LEFT : BreakoutEngine.RIGHT;
+		board = new BreakoutEngine(tracker, Commons.SEED, new BrickWall(columns, rows));
+		board.setCycleDetection(false);
+		start = board.snapshot();
+		wall = new BrickWall(columns, rows);
+		Random random = new Random(1);
+		for (int i = 0; i < QUERIES; i++) {
+			queryX[i] = 25 + random.nextInt(250);
+			queryY[i] = 45 + random.nextInt(60);
+		}
+	}
+
+	// A finished game starts over from the same state
+	@Benchmark
+	public int tick() {
+		if (!board.isInGame())
+			board.restore(start);
+		board.step();
+		return board.getTime();
+	}
+
+	// Bricks overlapped by a ball at the next query position, found with the grid
+	@Benchmark
+	public int gridCheck() {
+		int x = queryX[query];
+		int y = queryY[query];
+		query = (query + 1) % QUERIES;
+		int found = 0;
+		int lastColumn = wall.lastColumn(x + Commons.BALL_SIZE - 1);
+		int lastRow = wall.lastRow(y + Commons.BALL_SIZE - 1);
+		for (int row = wall.firstRow(y); row <= lastRow; row++)
+			for (int column = wall.firstColumn(x); column <= lastColumn; column++)
+				if (wall.isAlive(column, row))
+					found++;
+		return found;
+	}
+
+	// Same query, testing the ball rectangle against every brick
+	@Benchmark
+	public int fullScan() {
+		int x = queryX[query];
+		int y = queryY[query];
+		query = (query + 1) % QUERIES;
+		int found = 0;
+		for (int row = 0; row < wall.getRows(); row++) {
+			for (int column = 0; column < wall.getColumns(); column++) {
+				int brickX = wall.brickX(column);
+				int brickY = wall.brickY(row);
+				if (wall.isAlive(column, row) && x < brickX + wall.getBrickWidth() && brickX < x + Commons.BALL_SIZE
+						&& y < brickY + wall.getBrickHeight() && brickY < y + Commons.BALL_SIZE)
+					found++;
+			}
+		}
+		return found;
+	}
+}
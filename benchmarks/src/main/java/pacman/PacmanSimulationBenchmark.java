@@ -0,0 +1,68 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.Fixtures;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * A single Pacman tick and whole episodes, played by a network or by a
+ * controller that always moves left to measure the simulator alone
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacmanSimulationBenchmark {
+
+	@Param({ "network", "fixed" })
+	public String controller;
+
+	private GameController gameController;
+	private PacmanEngine board;
+	private int[] start;
+
+	@Setup
+	public void setup() {
+		gameController = controller.equals("network") ? Fixtures.network(Fixtures.PACMAN, Fixtures.SEED)
+				: Fixtures.fixedController(Fixtures.PACMAN);
+		// One tick starts the game, which is where every tick restarts from
+		board = new PacmanEngine(gameController, Commons.SEED);
+		board.setBudget(1, Commons.PACMAN_MAX_MILLIS);
+		board.runSimulation();
+		start = board.snapshot();
+	}
+
+	// A finished game starts over from the same state, which is rare enough not
+	// to show in the average
+	@Benchmark
+	public double tick() {
+		if (!board.isInGame())
+			board.restore(start);
+		board.step();
+		return board.getFitness();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public double runSimulation() {
+		PacmanEngine episode = new PacmanEngine(gameController, Commons.SEED);
+		episode.runSimulation();
+		return episode.getFitness();
+	}
+}
@@ -0,0 +1,89 @@
+package algoritmo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import benchmarks.Fixtures;
+import pacman.PacmanEngine;
+import pacman.StateEncoding;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * The incremental hidden sums must choose the moves a full forward pass
+ * chooses, and nextMove(int[]) must stay safe to call from several threads
+ */
+class FeedforwardNeuralNetworkTest {
+
+	@Test
+	void incrementalSumsMatchFullSums() {
+		int[] incrementalTicks = new int[1];
+		for (int seed = 1; seed <= 10; seed++) {
+			FeedforwardNeuralNetwork network = Fixtures.network(Fixtures.PACMAN, seed);
+			Random random = new Random(seed);
+			int game = seed;
+			PacmanEngine board = new PacmanEngine(new GameController() {
+				@Override
+				public int nextMove(int[] currentState) {
+					throw new AssertionError("The engine didn't give the changed values");
+				}
+
+				@Override
+				public int nextMove(int[] currentState, int[] changed, int changedCount) {
+					if (changedCount >= 0)
+						incrementalTicks[0]++;
+					assertEquals(network.nextMove(currentState),
+							network.incrementalMove(currentState, changed, changedCount), "move of game " + game);
+					// Random moves, so that the games go through more states than the
+					// network would
+					return random.nextInt(Commons.PACMAN_NUM_ACTIONS);
+				}
+			}, seed);
+			board.setEncoding(StateEncoding.GRID);
+			board.runSimulation();
+		}
+		assertTrue(incrementalTicks[0] > 1000, "only " + incrementalTicks[0] + " incremental ticks");
+	}
+
+	@Test
+	void nextMoveIsThreadSafe() throws InterruptedException, ExecutionException {
+		FeedforwardNeuralNetwork network = Fixtures.network(Fixtures.PACMAN, 1);
+		Random random = new Random(1);
+		int[][] states = new int[64][Commons.PACMAN_STATE_SIZE];
+		int[] expected = new int[states.length];
+		for (int k = 0; k < states.length; k++) {
+			for (int j = 0; j < Commons.PACMAN_STATE_SIZE; j++)
+				states[k][j] = random.nextInt(4);
+			expected[k] = network.nextMove(states[k]);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<int[]>> results = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				results.add(pool.submit(() -> {
+					int[] moves = new int[states.length];
+					for (int round = 0; round < 200; round++)
+						for (int k = 0; k < states.length; k++)
+							moves[k] = network.nextMove(states[k]);
+					return moves;
+				}));
+			}
+			for (Future<int[]> result : results)
+				assertArrayEquals(expected, result.get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package breakout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import algoritmo.FeedforwardNeuralNetwork;
+import algoritmo.PopulationController;
+import benchmarks.Fixtures;
+import utils.BatchGameController;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * BreakoutBatch must end every game with the fitness a BreakoutEngine reports
+ * for the same controller and seed, so that the two can't drift apart
+ */
+class BreakoutBatchTest {
+
+	private static GameController[] controllers() {
+		GameController[] controllers = new GameController[8];
+		controllers[0] = state -> BreakoutEngine.LEFT;
+		controllers[1] = state -> BreakoutEngine.RIGHT;
+		controllers[2] = state -> state[0] < state[3] + 18 ? BreakoutEngine.LEFT : BreakoutEngine.RIGHT;
+		// Aims for the brick once the ball is going up
+		controllers[3] = state -> (state[2] < 0 ? state[5] : state[0]) < state[3] + 18 ? BreakoutEngine.LEFT
+				: BreakoutEngine.RIGHT;
+		for (int i = 4; i < controllers.length; i++)
+			controllers[i] = Fixtures.network(Fixtures.BREAKOUT, i);
+		return controllers;
+	}
+
+	@Test
+	void sameSeedMatchesEngines() {
+		GameController[] controllers = controllers();
+		for (int seed = 1; seed <= 5; seed++) {
+			BreakoutBatch batch = new BreakoutBatch(controllers, seed);
+			batch.runSimulation();
+			for (int i = 0; i < controllers.length; i++)
+				assertSameGame(batch, i, controllers[i], seed);
+		}
+	}
+
+	@Test
+	void differentSeedsMatchEngines() {
+		GameController[] controllers = controllers();
+		int[] seeds = new int[controllers.length * 4];
+		for (int i = 0; i < seeds.length; i++)
+			seeds[i] = 7 * i + 3;
+		int[] row = new int[Commons.BREAKOUT_STATE_SIZE];
+		BatchGameController policy = (states, games, count, moves) -> {
+			for (int k = 0; k < count; k++) {
+				System.arraycopy(states, k * row.length, row, 0, row.length);
+				moves[k] = controllers[games[k] % controllers.length].nextMove(row);
+			}
+		};
+		BreakoutBatch batch = new BreakoutBatch(policy, seeds);
+		batch.runSimulation();
+		for (int i = 0; i < seeds.length; i++)
+			assertSameGame(batch, i, controllers[i % controllers.length], seeds[i]);
+	}
+
+	// The policy GeneticAlgorithm evaluates populations with
+	@Test
+	void populationMatchesEngines() {
+		FeedforwardNeuralNetwork[] population = new FeedforwardNeuralNetwork[16];
+		for (int i = 0; i < population.length; i++)
+			population[i] = Fixtures.network(Fixtures.BREAKOUT, 100 + i);
+		BreakoutBatch batch = new BreakoutBatch(new PopulationController(population), population.length,
+				Commons.SEED);
+		batch.runSimulation();
+		for (int i = 0; i < population.length; i++)
+			assertSameGame(batch, i, population[i], Commons.SEED);
+	}
+
+	// Checked against an exact engine, so that a bug shared by the cycle skipping
+	// of both doesn't go unnoticed
+	private static void assertSameGame(BreakoutBatch batch, int game, GameController controller, int seed) {
+		BreakoutEngine engine = new BreakoutEngine(controller, seed, null);
+		engine.setCycleDetection(false);
+		engine.runSimulation();
+		assertEquals(engine.getFitness(), batch.getFitness(game), "game " + game + ", seed " + seed);
+	}
+}
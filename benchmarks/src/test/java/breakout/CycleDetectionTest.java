@@ -0,0 +1,106 @@
+package breakout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import benchmarks.Fixtures;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * Cycle detection must give the same result as simulating every tick, for
+ * every deterministic controller, on the single brick and on walls
+ */
+class CycleDetectionTest {
+
+	private static final int SEEDS = 5;
+
+	private static List<GameController> controllers() {
+		List<GameController> controllers = new ArrayList<>();
+		controllers.add(state -> BreakoutEngine.LEFT);
+		controllers.add(state -> BreakoutEngine.RIGHT);
+		// Follows the ball, so that the episodes are long and hit many bricks
+		controllers.add(state -> state[0] < state[3] + 18 ? BreakoutEngine.LEFT : BreakoutEngine.RIGHT);
+		for (long seed = 1; seed <= 3; seed++)
+			controllers.add(Fixtures.network(Fixtures.BREAKOUT, seed));
+		return controllers;
+	}
+
+	@Test
+	void singleBrickMatchesExactRun() {
+		for (GameController controller : controllers())
+			for (int seed = 1; seed <= SEEDS; seed++)
+				assertSameEpisode(controller, seed, 0, 0);
+	}
+
+	@Test
+	void wallMatchesExactRun() {
+		int[][] walls = { { Commons.WALL_COLUMNS, Commons.WALL_ROWS }, { 24, 10 }, { 60, 25 } };
+		for (int[] wall : walls)
+			for (GameController controller : controllers())
+				for (int seed = 1; seed <= SEEDS; seed++)
+					assertSameEpisode(controller, seed, wall[0], wall[1]);
+	}
+
+	@Test
+	void budgetedRunMatchesExactRun() {
+		GameController tracker = controllers().get(2);
+		for (int budget : new int[] { 1, 999, 54321 }) {
+			BreakoutEngine exact = new BreakoutEngine(tracker, Commons.SEED, null);
+			exact.setCycleDetection(false);
+			exact.setTickBudget(budget);
+			exact.runSimulation();
+			BreakoutEngine skipping = new BreakoutEngine(tracker, Commons.SEED, null);
+			skipping.setCycleDetection(true);
+			skipping.setTickBudget(budget);
+			skipping.runSimulation();
+			assertEquals(exact.getFitness(), skipping.getFitness(), "budget " + budget);
+			assertEquals(exact.isTruncated(), skipping.isTruncated(), "budget " + budget);
+		}
+	}
+
+	// The wall's key takes all 64 bits: no field may spill into another
+	@Test
+	void wallKeyKeepsEveryField() {
+		BreakoutEngine board = new BreakoutEngine(state -> BreakoutEngine.LEFT, Commons.SEED,
+				new BrickWall(Commons.WALL_COLUMNS, Commons.WALL_ROWS));
+		int[] snapshot = board.snapshot();
+		int ballX = Commons.WIDTH - Commons.BALL_SIZE, ballY = Commons.BOTTOM_EDGE, paddleX = Commons.WIDTH
+				- Commons.PADDLE_WIDTH;
+		snapshot[0] = ballX;
+		snapshot[1] = ballY;
+		snapshot[2] = 1;
+		snapshot[3] = -1;
+		snapshot[4] = paddleX;
+		snapshot[5] = 1;
+		board.restore(snapshot);
+		board.getWall().destroy(0, 0);
+
+		long key = board.packState();
+		assertEquals(board.getWall().getRemaining(), key & BreakoutEngine.REMAINING_MASK);
+		key >>>= BreakoutEngine.REMAINING_BITS;
+		assertEquals(1 + 1, key & 3);
+		assertEquals(paddleX, key >>> 2 & 1023);
+		assertEquals(-1 + 1, key >>> 12 & 3);
+		assertEquals(1 + 1, key >>> 14 & 3);
+		assertEquals(ballY, key >>> 16 & 1023);
+		assertEquals(ballX, key >>> 26);
+	}
+
+	private static void assertSameEpisode(GameController controller, int seed, int columns, int rows) {
+		BreakoutEngine exact = new BreakoutEngine(controller, seed, columns == 0 ? null : new BrickWall(columns, rows));
+		exact.setCycleDetection(false);
+		exact.runSimulation();
+		BreakoutEngine skipping = new BreakoutEngine(controller, seed,
+				columns == 0 ? null : new BrickWall(columns, rows));
+		skipping.setCycleDetection(true);
+		skipping.runSimulation();
+		String episode = "seed " + seed + ", wall " + columns + "x" + rows + ", " + controller;
+		assertEquals(exact.getFitness(), skipping.getFitness(), episode);
+		assertEquals(exact.getKills(), skipping.getKills(), episode);
+	}
+}
@@ -0,0 +1,121 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * Replays the episodes of pixel-rules-trace.txt, recorded on PacmanBoard while
+ * it still moved its sprites pixel by pixel, and checks that PacmanEngine
+ * hands the controller exactly the same states on every tick and ends with the
+ * same fitness. The controller heads for the nearest dot away from the ghosts,
+ * with moves picked from a hash of the state now and then, so it is
+ * deterministic, clears levels and still covers a wide range of behaviours.
+ */
+class PixelRulesTraceTest {
+
+	private static final String TRACE = "pixel-rules-trace.txt";
+	private static final int N_BLOCKS = LevelTemplate.N_BLOCKS;
+	// Wall bit, column and row offsets of LEFT, RIGHT, UP and DOWN
+	private static final int[] WALLS = { 1, 4, 2, 8 };
+	private static final int[] DX = { -1, 1, 0, 0 };
+	private static final int[] DY = { 0, 0, -1, 1 };
+
+	@Test
+	void engineReplaysPixelRulesTrace() throws IOException {
+		int episodes = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				PixelRulesTraceTest.class.getResourceAsStream(TRACE), StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.startsWith("#"))
+					continue;
+				String[] fields = line.split(" ");
+				int episode = Integer.parseInt(fields[0]);
+				TraceController controller = new TraceController(episode);
+				PacmanEngine engine = new PacmanEngine(controller, episode);
+				engine.setEncoding(StateEncoding.GRID);
+				engine.setBudget(Commons.PACMAN_MAX_STEPS, Long.MAX_VALUE / 1_000_000 / 2);
+				engine.runSimulation();
+
+				assertEquals(Integer.parseInt(fields[1]), controller.ticks, "ticks of episode " + episode);
+				assertEquals(Long.parseLong(fields[3]), controller.trace, "states of episode " + episode);
+				assertEquals(Double.parseDouble(fields[2]), engine.getFitness(), "fitness of episode " + episode);
+				episodes++;
+			}
+		}
+		assertTrue(episodes > 0, "Empty trace");
+	}
+
+	// Chooses moves from a hash of the state and chains the hashes of every state
+	private static class TraceController implements GameController {
+		private final int salt;
+		long trace;
+		int ticks;
+
+		TraceController(int salt) {
+			this.salt = salt;
+		}
+
+		@Override
+		public int nextMove(int[] currentState) {
+			long hash = salt;
+			for (int value : currentState)
+				hash = hash * 31 + value;
+			trace = trace * 0x9E3779B97F4A7C15L + hash;
+			ticks++;
+			hash = (hash ^ hash >>> 29) * 0x9E3779B97F4A7C15L;
+			if ((hash >>> 60) == 0)
+				return (int) ((hash >>> 32) % 5);
+			return towardsDot(currentState);
+		}
+
+		// First move of a shortest path from pacman to a dot that doesn't go next to
+		// a ghost, or NONE if there is no such path
+		private int towardsDot(int[] state) {
+			int cells = N_BLOCKS * N_BLOCKS;
+			int start = 0;
+			while (state[start] != 3)
+				start++;
+			int[] firstMove = new int[cells];
+			int[] queue = new int[cells];
+			Arrays.fill(firstMove, -1);
+			firstMove[start] = PacmanEngine.NONE;
+			int head = 0, tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				int cell = queue[head++];
+				if (cell != start && state[cell] == 1)
+					return firstMove[cell];
+				for (int d = 0; d < 4; d++) {
+					if ((LevelTemplate.CLASSIC.getWalls(cell) & WALLS[d]) != 0)
+						continue;
+					int next = cell + DX[d] + N_BLOCKS * DY[d];
+					if (firstMove[next] >= 0 || nearGhost(state, next))
+						continue;
+					firstMove[next] = cell == start ? d + 1 : firstMove[cell];
+					queue[tail++] = next;
+				}
+			}
+			return PacmanEngine.NONE;
+		}
+
+		private boolean nearGhost(int[] state, int cell) {
+			int column = cell % N_BLOCKS;
+			for (int offset = -1; offset <= 1; offset++)
+				if (column + offset >= 0 && column + offset < N_BLOCKS && state[cell + offset] == 2)
+					return true;
+			return cell >= N_BLOCKS && state[cell - N_BLOCKS] == 2
+					|| cell < N_BLOCKS * (N_BLOCKS - 1) && state[cell + N_BLOCKS] == 2;
+		}
+	}
+}
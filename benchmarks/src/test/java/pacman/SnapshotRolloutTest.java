@@ -0,0 +1,56 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import utils.Commons;
+
+/**
+ * A board reused for rollouts, as LookaheadController's workers do, must give
+ * every rollout its whole budget: restoring a snapshot starts the time budget
+ * over, so rollouts still reach their step budget long after the board has
+ * played for more than maxMillis in total
+ */
+class SnapshotRolloutTest {
+
+	private static final int DEPTH = 100;
+	private static final long ROLLOUT_MILLIS = 20;
+
+	@Test
+	void everyRolloutGetsItsWholeBudget() {
+		PacmanEngine game = new PacmanEngine(state -> PacmanEngine.LEFT, Commons.SEED);
+		game.setBudget(50, Commons.PACMAN_MAX_MILLIS);
+		game.runSimulation();
+		int[] root = game.snapshot();
+		int rootSteps = PacmanEngine.snapshotSteps(root);
+
+		Random random = new Random(1);
+		PacmanEngine board = new PacmanEngine(state -> random.nextInt(5), 0);
+		int rollouts = 0;
+		// Rollouts that reach their step budget once the board has played for
+		// longer than the time budget
+		int lateFullRollouts = 0;
+		long start = System.nanoTime();
+		// Well past the time budget of a single rollout
+		while (rollouts < 100 || System.nanoTime() - start < 10 * ROLLOUT_MILLIS * 1_000_000) {
+			board.restore(root);
+			board.setSeed(rollouts);
+			board.setBudget(rootSteps + DEPTH, ROLLOUT_MILLIS);
+			board.resumeSimulation();
+			int steps = PacmanEngine.snapshotSteps(board.snapshot());
+			// A rollout only stops early when pacman loses his last life
+			if (board.isTruncated())
+				assertEquals(rootSteps + DEPTH, steps, "steps of rollout " + rollouts);
+			else
+				assertEquals(0, board.getLives(), "lives left after rollout " + rollouts);
+			if (steps == rootSteps + DEPTH && System.nanoTime() - start > ROLLOUT_MILLIS * 1_000_000)
+				lateFullRollouts++;
+			rollouts++;
+		}
+		assertTrue(lateFullRollouts > 0, "no full rollout after " + ROLLOUT_MILLIS + " ms");
+	}
+}
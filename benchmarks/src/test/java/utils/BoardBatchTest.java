@@ -0,0 +1,59 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import benchmarks.Fixtures;
+import breakout.BreakoutEngine;
+import pacman.PacmanEngine;
+
+/**
+ * BoardBatch must end every board with the fitness it gets when it plays alone
+ * with the same controller and seed, for one network on many seeds
+ */
+class BoardBatchTest {
+
+	private static final int NETWORKS = 5;
+	private static final int SEEDS = 16;
+
+	@Test
+	void breakoutMatchesSoloRuns() {
+		assertBatchMatchesSoloRuns(Fixtures.BREAKOUT);
+	}
+
+	@Test
+	void pacmanMatchesSoloRuns() {
+		assertBatchMatchesSoloRuns(Fixtures.PACMAN);
+	}
+
+	private static void assertBatchMatchesSoloRuns(String game) {
+		for (int n = 1; n <= NETWORKS; n++) {
+			GameController network = Fixtures.network(game, n);
+			LockstepBoard[] boards = new LockstepBoard[SEEDS];
+			for (int seed = 1; seed <= SEEDS; seed++)
+				boards[seed - 1] = board(game, network, seed);
+			BoardBatch batch = new BoardBatch(boards, network);
+			batch.runSimulation();
+
+			for (int seed = 1; seed <= SEEDS; seed++) {
+				LockstepBoard board = board(game, network, seed);
+				board.runSimulation();
+				assertEquals(board.getFitness(), batch.getFitness(seed - 1),
+						game + " network " + n + ", seed " + seed);
+			}
+		}
+	}
+
+	// A board that plays every tick within its step budget, as the batch does
+	private static LockstepBoard board(String game, GameController controller, int seed) {
+		if (game.equals(Fixtures.BREAKOUT)) {
+			BreakoutEngine board = new BreakoutEngine(controller, seed);
+			board.setCycleDetection(false);
+			return board;
+		}
+		PacmanEngine board = new PacmanEngine(controller, seed);
+		board.setBudget(Commons.PACMAN_MAX_STEPS, Long.MAX_VALUE / 1_000_000 / 2);
+		return board;
+	}
+}
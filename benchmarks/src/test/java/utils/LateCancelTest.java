@@ -0,0 +1,40 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import breakout.BreakoutEngine;
+import pacman.PacmanEngine;
+
+/**
+ * A cancel() that arrives after a simulation returned, as a watchdog alarm
+ * firing just before it is cancelled does, must not cut the next resumed run
+ * of the episode short
+ */
+class LateCancelTest {
+
+	@Test
+	void pacmanIgnoresLateCancel() {
+		PacmanEngine board = new PacmanEngine(state -> PacmanEngine.NONE, Commons.SEED);
+		assertResumeIgnoresLateCancel(board, 10, 30);
+	}
+
+	@Test
+	void breakoutIgnoresLateCancel() {
+		BreakoutEngine board = new BreakoutEngine(state -> BreakoutEngine.LEFT, Commons.SEED);
+		board.setCycleDetection(false);
+		assertResumeIgnoresLateCancel(board, 10, 30);
+	}
+
+	private static <B extends LockstepBoard & BudgetedBoard> void assertResumeIgnoresLateCancel(B board,
+			int firstBudget, int secondBudget) {
+		board.setTickBudget(firstBudget);
+		board.runSimulation();
+		assertEquals(firstBudget, board.getTicks());
+		board.cancel();
+		board.setTickBudget(secondBudget);
+		board.resumeSimulation();
+		assertEquals(secondBudget, board.getTicks());
+	}
+}
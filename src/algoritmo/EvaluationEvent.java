@@ -0,0 +1,34 @@
+package algoritmo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The simulation of one individual, on the thread that ran it. Games simulated
+ * together in a BreakoutBatch only report their results, with no duration.
+ */
+@Name("algoritmo.Evaluation")
+@Label("Evaluation")
+@Category({ "Projeto IA", "Evolution" })
+public class EvaluationEvent extends Event {
+
+	@Label("Genome Id")
+	long genomeId;
+
+	@Label("Seed")
+	int seed;
+
+	@Label("Ticks")
+	int ticks;
+
+	@Label("Fitness")
+	double fitness;
+
+	@Label("Truncated")
+	boolean truncated;
+
+	@Label("Batched")
+	boolean batched;
+}
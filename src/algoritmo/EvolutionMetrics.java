@@ -0,0 +1,122 @@
+package algoritmo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live figures of an evolution run, updated by GeneticAlgorithm and read by
+ * MetricsServer. Every value is an atomic or a volatile, so the evolution
+ * never waits for a scrape and a scrape only ever sees whole values.
+ */
+public class EvolutionMetrics {
+
+	private final long startNanos = System.nanoTime();
+	private final AtomicInteger generation = new AtomicInteger();
+	private volatile double bestFitness = Double.NaN;
+	private volatile double medianFitness = Double.NaN;
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder ticks = new LongAdder();
+	// Nanoseconds the workers spent simulating
+	private final LongAdder busyNanos = new LongAdder();
+	// Children a Surrogate predicted not to be worth simulating
+	private final LongAdder screenedOut = new LongAdder();
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private volatile int workers = 1;
+	// Rates of the last generation, as evaluations and ticks per second
+	private volatile double evaluationRate;
+	private volatile double tickRate;
+	private volatile long generationStartNanos = startNanos;
+	private long generationStartEvaluations, generationStartTicks;
+	// Epoch milliseconds of the last write of the population file, 0 if none
+	private final AtomicLong lastCheckpoint = new AtomicLong();
+
+	void startGeneration(int generation, double bestFitness, double medianFitness) {
+		long now = System.nanoTime();
+		long evaluationCount = evaluations.sum();
+		long tickCount = ticks.sum();
+		if (this.generation.get() > 0) {
+			double seconds = (now - generationStartNanos) / 1e9;
+			evaluationRate = (evaluationCount - generationStartEvaluations) / seconds;
+			tickRate = (tickCount - generationStartTicks) / seconds;
+		}
+		generationStartNanos = now;
+		generationStartEvaluations = evaluationCount;
+		generationStartTicks = tickCount;
+		this.bestFitness = bestFitness;
+		this.medianFitness = medianFitness;
+		this.generation.set(generation);
+	}
+
+	void queued(int individuals) {
+		queueDepth.addAndGet(individuals);
+	}
+
+	void evaluated(int individuals, long ticks, long nanos) {
+		queueDepth.addAndGet(-individuals);
+		evaluations.add(individuals);
+		this.ticks.add(ticks);
+		busyNanos.add(nanos);
+	}
+
+	void screenedOut(int candidates) {
+		screenedOut.add(candidates);
+	}
+
+	void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	void checkpointWritten() {
+		lastCheckpoint.set(System.currentTimeMillis());
+	}
+
+	/** The metrics in the Prometheus text exposition format */
+	public String toPrometheus() {
+		StringBuilder out = new StringBuilder(2048);
+		double uptime = (System.nanoTime() - startNanos) / 1e9;
+		Runtime runtime = Runtime.getRuntime();
+
+		gauge(out, "generation", "Current generation", generation.get());
+		gauge(out, "best_fitness", "Best fitness of the current generation's population", bestFitness);
+		gauge(out, "median_fitness", "Median fitness of the current generation's population", medianFitness);
+		counter(out, "evaluations_total", "Individuals evaluated", evaluations.sum());
+		counter(out, "ticks_total", "Game ticks simulated by the evaluations", ticks.sum());
+		counter(out, "screened_out_total", "Children discarded by the surrogate without being simulated",
+				screenedOut.sum());
+		gauge(out, "evaluations_per_second", "Evaluations per second during the last generation", evaluationRate);
+		gauge(out, "ticks_per_second", "Game ticks per second during the last generation", tickRate);
+		gauge(out, "queue_depth", "Individuals waiting to be evaluated", queueDepth.get());
+		gauge(out, "workers", "Threads evaluating individuals", workers);
+		gauge(out, "worker_utilization", "Fraction of the workers' time spent simulating since the start",
+				uptime > 0 ? busyNanos.sum() / 1e9 / (uptime * workers) : 0);
+		gauge(out, "heap_used_bytes", "Heap in use", runtime.totalMemory() - runtime.freeMemory());
+		gauge(out, "heap_max_bytes", "Maximum heap size", runtime.maxMemory());
+		gauge(out, "last_checkpoint_timestamp_seconds", "Time the population file was last written, 0 if never",
+				lastCheckpoint.get() / 1000.0);
+		gauge(out, "uptime_seconds", "Time since the run started", uptime);
+		return out.toString();
+	}
+
+	private static void gauge(StringBuilder out, String name, String help, double value) {
+		metric(out, name, help, "gauge", value);
+	}
+
+	private static void counter(StringBuilder out, String name, String help, double value) {
+		metric(out, name, help, "counter", value);
+	}
+
+	private static void metric(StringBuilder out, String name, String help, String type, double value) {
+		name = "projeto_ia_" + name;
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		out.append(name).append(' ');
+		if (Double.isNaN(value))
+			out.append("NaN");
+		else if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			out.append((long) value);
+		else
+			out.append(value);
+		out.append('\n');
+	}
+}
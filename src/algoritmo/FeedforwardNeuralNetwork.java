@@ -1,26 +1,62 @@
 package algoritmo;
 
-import breakout.BreakoutBoard;
-import pacman.PacmanBoard;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import breakout.BreakoutEngine;
+import pacman.PacmanEngine;
 import utils.*;
 
 public class FeedforwardNeuralNetwork implements GameController {
+	private static final AtomicLong nextId = new AtomicLong();
+	// Identifies the network in the events and logs of a run
+	private final long id = nextId.incrementAndGet();
 	private int inputDim;
 	private int hiddenDim;
 	private int outputDim;
 	private double[][] hiddenWeights;
+	// The hidden weights of a pruned network, in compressed sparse row form. The
+	// rows that are still more than DENSE_ROW_FILL full stay in hiddenWeights,
+	// since going through the others by index is slower, and the rest are null
+	// there: the weights of input j are then sparseValues[k] for k from
+	// sparseRows[j] to sparseRows[j + 1] - 1, each going to the hidden unit
+	// sparseColumns[k]
+	private static final double DENSE_ROW_FILL = 0.25;
+	private int[] sparseRows;
+	private int[] sparseColumns;
+	private double[] sparseValues;
 	private double[][] outputWeights;
 	private double[] hiddenBiases;
 	private double[] outputBiases;
 	private Board board;
+	private double fitness;
+	private boolean truncated;
+	private double[] hiddenBuffer;
+	private double[] outputBuffer;
+	// Hidden layers of every state of a nextMoves() batch, one after another
+	private double[] batchBuffer;
+	// Weighted sums of the hidden layer for incrementalInputs, the last state
+	// given with its changes, which is the array the board reuses every tick
+	private double[] incrementalSums;
+	private int[] incrementalInputs;
+	private int[] incrementalState;
+	private int ticksSinceRefresh;
+	// Ticks after which the sums are recomputed, so rounding errors can't add up
+	private static final int REFRESH_PERIOD = 1024;
 
 	public FeedforwardNeuralNetwork(int inputDim, int hiddenDim, int outputDim) {
+		this(inputDim, hiddenDim, outputDim, new SplittableRandom());
+	}
+
+	// Random weights and biases between -1 and 1, drawn from the given stream
+	public FeedforwardNeuralNetwork(int inputDim, int hiddenDim, int outputDim, SplittableRandom random) {
 		this.inputDim = inputDim;
 		this.hiddenDim = hiddenDim;
 		this.outputDim = outputDim;
-		this.board = inputDim == Commons.BREAKOUT_STATE_SIZE ? new BreakoutBoard(this, false, Commons.SEED)
-				: new PacmanBoard(this, false, Commons.SEED);
-		initializeParameters();
+		this.board = inputDim == Commons.BREAKOUT_STATE_SIZE ? new BreakoutEngine(this, Commons.SEED)
+				: new PacmanEngine(this, Commons.SEED);
+		initializeParameters(random);
 	}
 
 	// [w1,1; w1,2; w2,1; w2,2; B1; B2; w1,o; w2,o; Bo]
@@ -28,13 +64,17 @@ public class FeedforwardNeuralNetwork implements GameController {
 		this.inputDim = inputDim;
 		this.hiddenDim = hiddenDim;
 		this.outputDim = outputDim;
-		this.board = inputDim == Commons.BREAKOUT_STATE_SIZE ? new BreakoutBoard(this, false, Commons.SEED)
-				: new PacmanBoard(this, false, Commons.SEED);
+		this.board = inputDim == Commons.BREAKOUT_STATE_SIZE ? new BreakoutEngine(this, Commons.SEED)
+				: new PacmanEngine(this, Commons.SEED);
 		applyWeightsAndBiases(values);
 	}
 
 	public void applyWeightsAndBiases(double[] values) {
 		hiddenWeights = new double[inputDim][hiddenDim];
+		sparseRows = null;
+		sparseColumns = null;
+		sparseValues = null;
+		incrementalState = null;
 		outputWeights = new double[hiddenDim][outputDim];
 		hiddenBiases = new double[hiddenDim];
 		outputBiases = new double[outputDim];
@@ -67,29 +107,65 @@ public class FeedforwardNeuralNetwork implements GameController {
 		if (inputValues.length != inputDim) {
 			throw new IllegalArgumentException("Invalid number of input values");
 		}
-		double[] hiddenLayer = new double[hiddenDim];
+		double[] outputLayer = new double[outputDim];
+		forward(inputValues, 0, new double[hiddenDim], outputLayer);
+		return outputLayer;
+	}
+
+	// Computes the output layer for the inputDim values starting at offset, using
+	// the given arrays as the hidden and output layers
+	private void forward(int[] inputValues, int offset, double[] hiddenLayer, double[] outputLayer) {
+		Arrays.fill(hiddenLayer, 0, hiddenDim, 0);
+		for (int j = 0; j < inputDim; j++) {
+			addInput(hiddenLayer, 0, inputValues[offset + j], j);
+		}
+		activateHidden(hiddenLayer, 0);
+		outputLayer(hiddenLayer, 0, outputLayer);
+	}
+
+	/**
+	 * Adds input times the weights of input j to the weighted sums of the hidden
+	 * layer starting at offset. The sum of each hidden unit gets its terms in
+	 * the order of the inputs, as a loop over the inputs for each unit would add
+	 * them, so the result doesn't depend on the weights being sparse. Zero inputs
+	 * and pruned weights only add zeros, which don't change a sum, and are
+	 * skipped.
+	 */
+	private void addInput(double[] sums, int offset, int input, int j) {
+		if (input == 0)
+			return;
+		double[] weights = hiddenWeights[j];
+		if (weights != null) {
+			for (int i = 0; i < hiddenDim; i++)
+				sums[offset + i] += input * weights[i];
+		} else {
+			for (int k = sparseRows[j]; k < sparseRows[j + 1]; k++)
+				sums[offset + sparseColumns[k]] += input * sparseValues[k];
+		}
+	}
+
+	// Adds the biases to the weighted sums of a hidden layer and applies its
+	// activation
+	private void activateHidden(double[] hiddenLayer, int offset) {
 		for (int i = 0; i < hiddenDim; i++) {
-			double sum = 0;
-			for (int j = 0; j < inputDim; j++) {
-				sum += inputValues[j] * hiddenWeights[j][i];
-			}
-			hiddenLayer[i] = (sum + hiddenBiases[i]);
+			hiddenLayer[offset + i] = (hiddenLayer[offset + i] + hiddenBiases[i]);
 			if (inputDim == Commons.BREAKOUT_STATE_SIZE)
-				hiddenLayer[i] = sigmoid(hiddenLayer[i]);
+				hiddenLayer[offset + i] = sigmoid(hiddenLayer[offset + i]);
 		}
 		if (inputDim == Commons.PACMAN_STATE_SIZE)
-			hiddenLayer = softmax(hiddenLayer);
-		double[] outputLayer = new double[outputDim];
+			softmax(hiddenLayer, offset, hiddenDim);
+	}
+
+	private void outputLayer(double[] hiddenLayer, int offset, double[] outputLayer) {
 		for (int i = 0; i < outputDim; i++) {
 			double sum = 0;
 			for (int j = 0; j < hiddenDim; j++)
-				sum += hiddenLayer[j] * outputWeights[j][i];
+				sum += hiddenLayer[offset + j] * outputWeights[j][i];
 
 			outputLayer[i] = (sum + outputBiases[i]);
 			if (inputDim == Commons.BREAKOUT_STATE_SIZE)
-				hiddenLayer[i] = sigmoid(hiddenLayer[i]);
+				hiddenLayer[offset + i] = sigmoid(hiddenLayer[offset + i]);
 		}
-		return outputLayer;
 	}
 
 	private double sigmoid(double z) {
@@ -100,6 +176,12 @@ public class FeedforwardNeuralNetwork implements GameController {
 	// softmax(x) = e^x / sum(e^x)
 	public static double[] softmax(double[] values) {
 		double[] softmax = new double[values.length];
+		softmax(values, softmax);
+		return softmax;
+	}
+
+	// Writes the softmax of values to softmax, which may be the same array
+	private static void softmax(double[] values, double[] softmax) {
 		double sum = 0.0;
 
 		// First, calculate the exponential of each value as well as the total sum
@@ -112,14 +194,25 @@ public class FeedforwardNeuralNetwork implements GameController {
 		for (int i = 0; i < values.length; i++) {
 			softmax[i] = softmax[i] / sum;
 		}
+	}
 
-		return softmax;
+	// Softmax of the length values starting at offset, in place
+	private static void softmax(double[] values, int offset, int length) {
+		double sum = 0.0;
+		for (int i = offset; i < offset + length; i++) {
+			values[i] = Math.exp(values[i]);
+			sum += values[i];
+		}
+		for (int i = offset; i < offset + length; i++) {
+			values[i] = values[i] / sum;
+		}
 	}
 
 	public double[] getNeuralNetwork() {
 		double[] result = new double[inputDim == Commons.BREAKOUT_STATE_SIZE ? Commons.BREAKOUT_NETWORK_SIZE
 				: Commons.PACMAN_NETWORK_SIZE];
 		int index = 0;
+		double[][] hiddenWeights = getHiddenWeights();
 		for (int i = 0; i < inputDim; i++) {
 			for (int j = 0; j < hiddenDim; j++) {
 				result[index++] = hiddenWeights[i][j];
@@ -140,7 +233,136 @@ public class FeedforwardNeuralNetwork implements GameController {
 		return result;
 	}
 
-	private void initializeParameters() {
+	// The hidden weights as a matrix, with the compressed rows of a sparse
+	// network expanded
+	private double[][] getHiddenWeights() {
+		if (sparseRows == null)
+			return hiddenWeights;
+		double[][] weights = new double[inputDim][];
+		for (int j = 0; j < inputDim; j++) {
+			weights[j] = hiddenWeights[j];
+			if (weights[j] == null) {
+				weights[j] = new double[hiddenDim];
+				for (int k = sparseRows[j]; k < sparseRows[j + 1]; k++)
+					weights[j][sparseColumns[k]] = sparseValues[k];
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns a copy of this network without its small weights, whose sparse
+	 * rows of hidden weights are compressed so that nextMove() only goes through
+	 * the weights that are left. The weights of inputs the board never sets are
+	 * always removed, and biases are always kept. The copy has no fitness until
+	 * it is simulated.
+	 *
+	 * @param threshold  weights whose absolute value is below it are removed
+	 * @param structural first removes every input, and every hidden unit, whose
+	 *                   weights have a mean absolute value below threshold. A
+	 *                   removed hidden unit loses its weights but not its bias,
+	 *                   which still takes part in the Pacman softmax
+	 * @param usedInputs number of inputs, from the first, that the board can set
+	 *                   to something other than 0, such as
+	 *                   StateEncoding.getUsedInputs(), or inputDim to keep them
+	 *                   all
+	 */
+	public FeedforwardNeuralNetwork prune(double threshold, boolean structural, int usedInputs) {
+		if (usedInputs < 0 || usedInputs > inputDim) {
+			throw new IllegalArgumentException("Invalid number of used inputs");
+		}
+		double[] values = getNeuralNetwork();
+		int outputOffset = inputDim * hiddenDim + hiddenDim;
+		Arrays.fill(values, usedInputs * hiddenDim, inputDim * hiddenDim, 0);
+
+		if (structural) {
+			for (int j = 0; j < usedInputs; j++) {
+				double sum = 0;
+				for (int i = 0; i < hiddenDim; i++)
+					sum += Math.abs(values[j * hiddenDim + i]);
+				if (sum / hiddenDim < threshold)
+					Arrays.fill(values, j * hiddenDim, (j + 1) * hiddenDim, 0);
+			}
+			for (int i = 0; i < hiddenDim; i++) {
+				double sum = 0;
+				for (int j = 0; j < usedInputs; j++)
+					sum += Math.abs(values[j * hiddenDim + i]);
+				for (int o = 0; o < outputDim; o++)
+					sum += Math.abs(values[outputOffset + i * outputDim + o]);
+				if (sum / (usedInputs + outputDim) < threshold) {
+					for (int j = 0; j < usedInputs; j++)
+						values[j * hiddenDim + i] = 0;
+					Arrays.fill(values, outputOffset + i * outputDim, outputOffset + (i + 1) * outputDim, 0);
+				}
+			}
+		}
+
+		for (int w = 0; w < outputOffset + hiddenDim * outputDim; w++) {
+			// Skips the hidden biases
+			if (w == inputDim * hiddenDim)
+				w = outputOffset;
+			if (Math.abs(values[w]) < threshold)
+				values[w] = 0;
+		}
+
+		FeedforwardNeuralNetwork pruned = new FeedforwardNeuralNetwork(inputDim, hiddenDim, outputDim, values);
+		pruned.compress();
+		return pruned;
+	}
+
+	// Moves the weights that aren't 0 of every row that isn't more than
+	// DENSE_ROW_FILL full to the compressed rows
+	private void compress() {
+		boolean[] compressed = new boolean[inputDim];
+		int count = 0;
+		for (int j = 0; j < inputDim; j++) {
+			int rowCount = 0;
+			for (double weight : hiddenWeights[j])
+				if (weight != 0)
+					rowCount++;
+			if (rowCount <= DENSE_ROW_FILL * hiddenDim) {
+				compressed[j] = true;
+				count += rowCount;
+			}
+		}
+		sparseRows = new int[inputDim + 1];
+		sparseColumns = new int[count];
+		sparseValues = new double[count];
+		int k = 0;
+		for (int j = 0; j < inputDim; j++) {
+			if (compressed[j]) {
+				for (int i = 0; i < hiddenDim; i++) {
+					if (hiddenWeights[j][i] != 0) {
+						sparseColumns[k] = i;
+						sparseValues[k++] = hiddenWeights[j][i];
+					}
+				}
+				hiddenWeights[j] = null;
+			}
+			sparseRows[j + 1] = k;
+		}
+	}
+
+	// Whether the network was pruned and keeps its hidden weights compressed
+	public boolean isSparse() {
+		return sparseRows != null;
+	}
+
+	// Number of weights of both layers that aren't 0, biases excluded
+	public int getNonZeroWeights() {
+		int count = 0;
+		for (double[] row : getHiddenWeights())
+			for (double weight : row)
+				if (weight != 0)
+					count++;
+		for (double[] row : outputWeights)
+			for (double weight : row)
+				if (weight != 0)
+					count++;
+		return count;
+	}
+
+	private void initializeParameters(SplittableRandom random) {
 		hiddenWeights = new double[inputDim][hiddenDim];
 		outputWeights = new double[hiddenDim][outputDim];
 		hiddenBiases = new double[hiddenDim];
@@ -149,15 +371,15 @@ public class FeedforwardNeuralNetwork implements GameController {
 		// The for loop is intentionally swapped here so that the biases can also be
 		// generated without requiring an extra loop
 		for (int i = 0; i < hiddenDim; i++) {
-			hiddenBiases[i] = Math.random() * 2 - 1;
+			hiddenBiases[i] = random.nextDouble() * 2 - 1;
 			for (int j = 0; j < inputDim; j++) {
-				hiddenWeights[j][i] = Math.random() * 2 - 1;
+				hiddenWeights[j][i] = random.nextDouble() * 2 - 1;
 			}
 		}
 		for (int i = 0; i < outputDim; i++) {
-			outputBiases[i] = Math.random() * 2 - 1;
+			outputBiases[i] = random.nextDouble() * 2 - 1;
 			for (int j = 0; j < hiddenDim; j++) {
-				outputWeights[j][i] = Math.random() * 2 - 1;
+				outputWeights[j][i] = random.nextDouble() * 2 - 1;
 			}
 		}
 	}
@@ -168,6 +390,7 @@ public class FeedforwardNeuralNetwork implements GameController {
 				+ inputDim + "\n"
 				+ "Weights between input and hidden layer with " + hiddenDim + " neurons: \n";
 		String hidden = "";
+		double[][] hiddenWeights = getHiddenWeights();
 		for (int input = 0; input < inputDim; input++) {
 			for (int h = 0; h < hiddenDim; h++) {
 				hidden += " w" + (input + 1) + "_" + (h + 1) + ": "
@@ -199,14 +422,122 @@ public class FeedforwardNeuralNetwork implements GameController {
 
 	@Override
 	public int nextMove(int[] currentState) {
-		double[] outputLayer = forward(currentState);
+		return chooseMove(forward(currentState));
+	}
+
+	/**
+	 * Called by the board playing this network on every tick. It reuses the
+	 * layers of this network like nextMove(int[], int), so it doesn't allocate
+	 * but isn't thread safe: a network must only play one board at a time.
+	 */
+	@Override
+	public int nextMove(int[] currentState, int[] changed, int changedCount) {
+		if (currentState.length != inputDim) {
+			throw new IllegalArgumentException("Invalid number of input values");
+		}
+		if (!Commons.INCREMENTAL_INFERENCE) {
+			return nextMove(currentState, 0);
+		}
+		return incrementalMove(currentState, changed, changedCount);
+	}
+
+	/**
+	 * Only adds the difference made by each changed input to the weighted sums
+	 * of the previous tick, which is a few dozen rows of hidden weights instead
+	 * of all of them on the GRID encoding. The sums are recomputed when the
+	 * changes aren't known, the state comes from another board or REFRESH_PERIOD
+	 * ticks went by. Used by nextMove(int[], int[], int) with
+	 * Commons.INCREMENTAL_INFERENCE.
+	 */
+	int incrementalMove(int[] currentState, int[] changed, int changedCount) {
+		if (incrementalSums == null) {
+			incrementalSums = new double[hiddenDim];
+			incrementalInputs = new int[inputDim];
+			hiddenBuffer = new double[hiddenDim];
+			outputBuffer = new double[outputDim];
+		}
+		if (changedCount < 0 || currentState != incrementalState || ++ticksSinceRefresh >= REFRESH_PERIOD) {
+			Arrays.fill(incrementalSums, 0);
+			for (int j = 0; j < inputDim; j++) {
+				addInput(incrementalSums, 0, currentState[j], j);
+			}
+			System.arraycopy(currentState, 0, incrementalInputs, 0, inputDim);
+			incrementalState = currentState;
+			ticksSinceRefresh = 0;
+		} else {
+			for (int k = 0; k < changedCount; k++) {
+				int j = changed[k];
+				int difference = currentState[j] - incrementalInputs[j];
+				if (difference != 0) {
+					addInput(incrementalSums, 0, difference, j);
+					incrementalInputs[j] = currentState[j];
+				}
+			}
+		}
+		System.arraycopy(incrementalSums, 0, hiddenBuffer, 0, hiddenDim);
+		activateHidden(hiddenBuffer, 0);
+		outputLayer(hiddenBuffer, 0, outputBuffer);
+		return chooseMove(outputBuffer);
+	}
+
+	/**
+	 * Returns the next move for the state stored at states[offset] to
+	 * states[offset + inputDim - 1]. Unlike nextMove(int[]) it reuses the
+	 * layers of this network, so it doesn't allocate but isn't thread safe.
+	 */
+	public int nextMove(int[] states, int offset) {
+		if (hiddenBuffer == null) {
+			hiddenBuffer = new double[hiddenDim];
+			outputBuffer = new double[outputDim];
+		}
+		forward(states, offset, hiddenBuffer, outputBuffer);
+		return chooseMove(outputBuffer);
+	}
+
+	/**
+	 * Chooses the moves of count states at once. The hidden layer of the whole
+	 * batch is computed as one matrix-matrix product, looping over the weights
+	 * of each input once for every state so that they stay in cache. Each sum
+	 * still adds its terms in the same order as nextMove(), and inputs that are
+	 * 0 are skipped since they add nothing, so the moves are exactly those
+	 * nextMove() would choose. Like nextMove(int[], int) it reuses its buffers
+	 * and isn't thread safe.
+	 */
+	@Override
+	public void nextMoves(int[] states, int stateSize, int count, int[] moves) {
+		if (stateSize != inputDim) {
+			throw new IllegalArgumentException("Invalid number of input values");
+		}
+		if (outputBuffer == null) {
+			hiddenBuffer = new double[hiddenDim];
+			outputBuffer = new double[outputDim];
+		}
+		if (batchBuffer == null || batchBuffer.length < count * hiddenDim) {
+			batchBuffer = new double[count * hiddenDim];
+		}
+		double[] hidden = batchBuffer;
+		Arrays.fill(hidden, 0, count * hiddenDim, 0);
+
+		for (int j = 0; j < inputDim; j++) {
+			for (int k = 0; k < count; k++) {
+				addInput(hidden, k * hiddenDim, states[k * inputDim + j], j);
+			}
+		}
+		for (int k = 0; k < count; k++) {
+			activateHidden(hidden, k * hiddenDim);
+			outputLayer(hidden, k * hiddenDim, outputBuffer);
+			moves[k] = chooseMove(outputBuffer);
+		}
+	}
+
+	private int chooseMove(double[] outputLayer) {
 		// Since Breakout doesn't have NONE we can't use the same logic for both games
 		if (inputDim == Commons.BREAKOUT_STATE_SIZE) {
 			if (outputLayer[0] > outputLayer[1])
-				return BreakoutBoard.LEFT;
-			return BreakoutBoard.RIGHT;
+				return BreakoutEngine.LEFT;
+			return BreakoutEngine.RIGHT;
 		} else {
-			int chosenMove = PacmanBoard.NONE;
+			int chosenMove = PacmanEngine.NONE;
 			double highestValue = outputLayer[0];
 
 			for (int i = 1; i < outputLayer.length; i++) {
@@ -220,11 +551,42 @@ public class FeedforwardNeuralNetwork implements GameController {
 		}
 	}
 
+	public long getId() {
+		return id;
+	}
+
+	public int getInputDim() {
+		return inputDim;
+	}
+
 	public double getFitness() {
-		return board.getFitness();
+		return fitness;
+	}
+
+	// Sets the fitness of a network that was simulated outside its own board
+	public void setFitness(double fitness) {
+		this.fitness = fitness;
 	}
 
 	public void runSimulation() {
 		board.runSimulation();
+		fitness = board.getFitness();
+		truncated = board.isTruncated();
+	}
+
+	// Carries on an episode stopped by a budget, see BudgetedBoard
+	public void resumeSimulation() {
+		board.resumeSimulation();
+		fitness = board.getFitness();
+		truncated = board.isTruncated();
+	}
+
+	// Whether the fitness comes from an episode stopped by its budget
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public Board getBoard() {
+		return board;
 	}
 }
@@ -0,0 +1,43 @@
+package algoritmo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One generation of GeneticAlgorithm, from the sorting of the population to the
+ * evaluation of its children. The fitness statistics are those of the
+ * population the children were bred from.
+ */
+@Name("algoritmo.Generation")
+@Label("Generation")
+@Category({ "Projeto IA", "Evolution" })
+public class GenerationEvent extends Event {
+
+	@Label("Generation")
+	int generation;
+
+	@Label("Best Fitness")
+	double bestFitness;
+
+	@Label("Median Fitness")
+	double medianFitness;
+
+	@Label("Mean Fitness")
+	double meanFitness;
+
+	@Label("Worst Fitness")
+	double worstFitness;
+
+	@Label("Mutation Rate")
+	@Description("Mutation rate of this generation's children, including the modifier of a stuck fitness")
+	double mutationRate;
+
+	@Label("Truncated Episodes")
+	int truncated;
+
+	@Label("Children")
+	int children;
+}
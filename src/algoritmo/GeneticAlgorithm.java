@@ -2,31 +2,91 @@ package algoritmo;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.IntStream;
 
+import algoritmo.RandomStreams.Operator;
 import breakout.Breakout;
+import breakout.BreakoutBatch;
+import breakout.BreakoutEngine;
 import pacman.Pacman;
+import pacman.PacmanEngine;
+import utils.ActionLog;
+import utils.Board;
 import utils.BoardTypes;
+import utils.BudgetedBoard;
 import utils.Commons;
+import utils.GameController;
+import utils.LockstepBoard;
+import utils.Watchdog;
 
 public class GeneticAlgorithm {
-	private static final BoardTypes BOARD_TYPE = BoardTypes.BREAKOUT;
+	static final BoardTypes BOARD_TYPE = BoardTypes.BREAKOUT;
 	// The file size for 100 Pacman individuals is too large
 	private static final int POPULATION_SIZE = BOARD_TYPE == BoardTypes.BREAKOUT ? 100 : 40;
 	private static final int NUM_GENERATIONS = 1000;
 	private static final int TOURNAMENT_SIZE = BOARD_TYPE == BoardTypes.BREAKOUT ? 20 : 10;
-	private static final String FILENAME = BOARD_TYPE == BoardTypes.BREAKOUT ? "breakout.txt" : "pacman.txt";
-	private static Random random = new Random();
+	static final String FILENAME = BOARD_TYPE == BoardTypes.BREAKOUT ? "breakout.txt" : "pacman.txt";
+	// Episode of the best individual, which Breakout.main/Pacman.main can replay
+	private static final String ACTIONS_FILENAME = BOARD_TYPE == BoardTypes.BREAKOUT ? "breakout.actions"
+			: "pacman.actions";
+	// Simulate Breakout generations in lockstep instead of board by board
+	private static final boolean BATCH_EVALUATION = true;
+	// Archive of every generation of the run, which HistoryReader can rebuild any
+	// individual from. Genomes are only stored every HISTORY_KEYFRAME_INTERVAL
+	// generations, the others only store how they were bred
+	private static final boolean WRITE_HISTORY = false;
+	private static final String HISTORY_FILENAME = BOARD_TYPE == BoardTypes.BREAKOUT ? "breakout.history"
+			: "pacman.history";
+	private static final int HISTORY_KEYFRAME_INTERVAL = 100;
+	// Breed SURROGATE_CANDIDATES times more children than are simulated and only
+	// simulate those a Surrogate predicts to be the best. The surrogate describes
+	// networks by their moves on SURROGATE_PROBES states taken every
+	// SURROGATE_PROBE_INTERVAL ticks of the games of the first best individual
+	private static final boolean SURROGATE_SCREENING = false;
+	private static final int SURROGATE_CANDIDATES = 4;
+	private static final int SURROGATE_PROBES = 64;
+	private static final int SURROGATE_PROBE_INTERVAL = 25;
+	private static final int SURROGATE_MEMORY = 4000;
+	private static final int SURROGATE_NEIGHBOURS = 5;
+	// Share of the children kept without looking at their prediction, so that
+	// behaviours the surrogate has never seen still get simulated
+	private static final double SURROGATE_EXPLORATION = 0.25;
+	// Evaluate with successive halving: every individual first plays
+	// HALVING_FIRST_BUDGET ticks, then only the best 1 / HALVING_ETA of those
+	// still playing carry on for HALVING_ETA times more ticks, and so on up to
+	// the full episode. Doesn't apply to BreakoutBatch
+	private static final boolean SUCCESSIVE_HALVING = false;
+	private static final int HALVING_FIRST_BUDGET = 1000;
+	private static final int HALVING_ETA = 3;
+	// Weights of the final population below this absolute value are pruned, see
+	// FeedforwardNeuralNetwork.prune. The pruned population is simulated again
+	// and written in the sparse format. 0 doesn't prune
+	private static final double PRUNING_THRESHOLD = 0;
+	private static final boolean STRUCTURAL_PRUNING = false;
+	// Seed every random number of the run is derived from, 0 to start from a new
+	// one. It is printed and stored in the history so that the run can be repeated
+	private static final long MASTER_SEED = 0;
+	private static Watchdog watchdog = new Watchdog();
+	private static EvolutionMetrics metrics = new EvolutionMetrics();
 	private static FeedforwardNeuralNetwork bestSolution;
 	private final double MUTATION_RATE = 0.1;
 	private double mutationRateModifier = 0;
 	private double lastFitness = 0;
 	private int sameFitnessCount = 0;
+	private final RandomStreams streams = new RandomStreams(
+			MASTER_SEED != 0 ? MASTER_SEED : RandomStreams.newMasterSeed());
 
 	public GeneticAlgorithm() {
+		System.out.println("Master seed: " + streams.getMasterSeed());
+		MetricsServer metricsServer = startMetricsServer();
 		// Initialize the population
 		FeedforwardNeuralNetwork[] population = new FeedforwardNeuralNetwork[POPULATION_SIZE];
 		try {
@@ -34,18 +94,31 @@ public class GeneticAlgorithm {
 			System.out.println("File read successfully");
 		} catch (Exception e) {
 			System.out.println("Failed to read file, creating new population");
-			for (int i = 0; i < POPULATION_SIZE; i++) {
-				population[i] = generateNetwork();
-				population[i].runSimulation();
-			}
+			FeedforwardNeuralNetwork[] initial = population;
+			IntStream.range(0, POPULATION_SIZE).parallel()
+					.forEach(i -> initial[i] = generateNetwork(streams.stream(1, i, Operator.INITIALIZATION)));
+			evaluate(population);
 		}
+		HistoryWriter history = startHistory(population, streams.getMasterSeed());
+		Surrogate surrogate = SURROGATE_SCREENING ? startSurrogate(population) : null;
 		// Evolve the population for a fixed number of generations
 		for (int i = 0; i < NUM_GENERATIONS; i++) {
-			// Sort the population by fitness
+			GenerationEvent event = Commons.JFR_EVENTS ? new GenerationEvent() : null;
+			if (event != null)
+				event.begin();
+			// Sort the population by fitness, remembering where each individual was in
+			// the history
+			FeedforwardNeuralNetwork[] unsorted = population.clone();
 			Arrays.sort(population, (a, b) -> (int) (b.getFitness() - a.getFitness()));
+			metrics.startGeneration(i + 1, population[0].getFitness(), medianFitness(population));
 			// Print the best solution of this generation
 			double currentFitness = population[0].getFitness();
-			System.out.println("Generation " + (i + 1) + ": " + currentFitness);
+			int truncated = 0;
+			for (FeedforwardNeuralNetwork individual : population)
+				if (individual.isTruncated())
+					truncated++;
+			System.out.println("Generation " + (i + 1) + ": " + currentFitness
+					+ (truncated > 0 ? " (" + truncated + " truncated episodes)" : ""));
 			// Check if the fitness is the same as the last generation
 			if (currentFitness == lastFitness)
 				sameFitnessCount++;
@@ -65,36 +138,263 @@ public class GeneticAlgorithm {
 				mutationRateModifier += 0.01;
 			}
 			// Create the next generation
-			for (int j = 0; j < POPULATION_SIZE - TOURNAMENT_SIZE; j++) {
+			FeedforwardNeuralNetwork[] children = new FeedforwardNeuralNetwork[POPULATION_SIZE - TOURNAMENT_SIZE];
+			FeedforwardNeuralNetwork[] candidates = new FeedforwardNeuralNetwork[children.length
+					* (surrogate != null ? SURROGATE_CANDIDATES : 1)];
+			int[] parents1 = new int[candidates.length];
+			int[] parents2 = new int[candidates.length];
+			long[] seeds = new long[candidates.length];
+			FeedforwardNeuralNetwork[] parents = population;
+			int generation = i + 2;
+			double mutationRate = MUTATION_RATE + mutationRateModifier;
+			// Each child only draws from its own streams, so they are bred in parallel
+			// and still don't depend on the number of threads
+			IntStream.range(0, candidates.length).parallel().forEach(j -> {
+				seeds[j] = streams.seed(generation, TOURNAMENT_SIZE + j);
 				// Select two parents from the population
-				int parent1Index = selectParent();
-				int parent2Index = selectParent();
+				SplittableRandom selection = RandomStreams.stream(seeds[j], Operator.SELECTION);
+				int parent1Index = selectParent(selection);
+				int parent2Index = selectParent(selection);
 				while (parent2Index == parent1Index)
-					parent2Index = selectParent();
-				// Crossover the parents to create a new child
-				double[] childNetwork = crossover(population[parent1Index].getNeuralNetwork(),
-						population[parent2Index].getNeuralNetwork());
-				// Mutate the child
-				mutate(childNetwork);
-				FeedforwardNeuralNetwork child = generateNetwork(childNetwork);
-				child.runSimulation();
-				// Add the child to the population
-				population[TOURNAMENT_SIZE + j] = child;
+					parent2Index = selectParent(selection);
+				// Crossover the parents to create a new child and mutate it
+				double[] childNetwork = breed(parents[parent1Index].getNeuralNetwork(),
+						parents[parent2Index].getNeuralNetwork(), seeds[j], mutationRate);
+				candidates[j] = generateNetwork(childNetwork);
+				parents1[j] = indexOf(unsorted, parents[parent1Index]);
+				parents2[j] = indexOf(unsorted, parents[parent2Index]);
+			});
+			byte[][] descriptors = new byte[candidates.length][];
+			int[] kept = surrogate != null ? screen(surrogate, candidates, children.length, descriptors)
+					: IntStream.range(0, children.length).toArray();
+			for (int j = 0; j < children.length; j++) {
+				children[j] = candidates[kept[j]];
+				parents1[j] = parents1[kept[j]];
+				parents2[j] = parents2[kept[j]];
+				seeds[j] = seeds[kept[j]];
+			}
+			// Simulate the children and add them to the population
+			evaluate(children);
+			if (surrogate != null) {
+				for (int j = 0; j < children.length; j++)
+					surrogate.add(descriptors[kept[j]], children[j].getFitness());
+			}
+			if (event != null && event.shouldCommit()) {
+				event.generation = i + 1;
+				event.truncated = truncated;
+				event.children = children.length;
+				event.mutationRate = MUTATION_RATE + mutationRateModifier;
+				setFitnessStatistics(event, population);
+				event.commit();
+			}
+			System.arraycopy(children, 0, population, TOURNAMENT_SIZE, children.length);
+			if (history != null) {
+				int[] elites = new int[TOURNAMENT_SIZE];
+				for (int j = 0; j < elites.length; j++)
+					elites[j] = indexOf(unsorted, population[j]);
+				history = writeHistory(history, i + 2, population, elites, Arrays.copyOf(parents1, children.length),
+						Arrays.copyOf(parents2, children.length), Arrays.copyOf(seeds, children.length),
+						MUTATION_RATE + mutationRateModifier);
 			}
 		}
+		if (PRUNING_THRESHOLD > 0)
+			population = prune(population);
 		// Print the best solution we found
 		Arrays.sort(population, (a, b) -> (int) (b.getFitness() - a.getFitness()));
 		System.out.println("Best solution found: " + population[0]);
 		bestSolution = population[0];
 		writePopulation(population, FILENAME);
+		try {
+			recordEpisode(bestSolution).write(ACTIONS_FILENAME);
+		} catch (IOException e) {
+			System.out.println("An error occurred while trying to write the episode of the best solution.");
+			e.printStackTrace();
+		}
+		if (history != null)
+			closeHistory(history);
+		if (metricsServer != null)
+			metricsServer.stop();
+	}
+
+	// Prunes every individual and simulates the pruned networks
+	private static FeedforwardNeuralNetwork[] prune(FeedforwardNeuralNetwork[] population) {
+		FeedforwardNeuralNetwork[] pruned = new FeedforwardNeuralNetwork[population.length];
+		long before = 0, after = 0;
+		for (int i = 0; i < population.length; i++) {
+			pruned[i] = population[i].prune(PRUNING_THRESHOLD, STRUCTURAL_PRUNING, usedInputs());
+			before += population[i].getNonZeroWeights();
+			after += pruned[i].getNonZeroWeights();
+		}
+		evaluate(pruned);
+		System.out.println("Pruned " + (before - after) + " of " + before + " weights, best fitness "
+				+ Arrays.stream(population).mapToDouble(FeedforwardNeuralNetwork::getFitness).max().getAsDouble()
+				+ " -> " + Arrays.stream(pruned).mapToDouble(FeedforwardNeuralNetwork::getFitness).max().getAsDouble());
+		return pruned;
+	}
+
+	// Takes the probe states from games of the best individual and remembers the
+	// fitness of the whole population. Returns null if the best individual loses
+	// every game before a single state is taken
+	private static Surrogate startSurrogate(FeedforwardNeuralNetwork[] population) {
+		FeedforwardNeuralNetwork best = population[0];
+		for (FeedforwardNeuralNetwork individual : population)
+			if (individual.getFitness() > best.getFitness())
+				best = individual;
+		FeedforwardNeuralNetwork player = best;
+		int[] probes = Surrogate.collectProbeStates(seed -> newBoard(player, seed), player, SURROGATE_PROBES,
+				SURROGATE_PROBE_INTERVAL, 20);
+		if (probes.length == 0) {
+			System.out.println("No probe states for the surrogate, running without it");
+			return null;
+		}
+		Surrogate surrogate = new Surrogate(probes,
+				BOARD_TYPE == BoardTypes.BREAKOUT ? Commons.BREAKOUT_STATE_SIZE : Commons.PACMAN_STATE_SIZE,
+				SURROGATE_MEMORY, SURROGATE_NEIGHBOURS);
+		for (FeedforwardNeuralNetwork individual : population)
+			surrogate.add(surrogate.describe(individual), individual.getFitness());
+		return surrogate;
+	}
+
+	// Indices of the count candidates to simulate, in increasing order: the first
+	// SURROGATE_EXPLORATION of them, then those with the highest predicted
+	// fitness. The descriptors of the candidates are left in descriptors so that
+	// the fitness of those kept can be added once they are simulated
+	private static int[] screen(Surrogate surrogate, FeedforwardNeuralNetwork[] candidates, int count,
+			byte[][] descriptors) {
+		double[] predicted = new double[candidates.length];
+		int[] novelty = new int[candidates.length];
+		IntStream.range(0, candidates.length).parallel().forEach(c -> {
+			descriptors[c] = surrogate.describe(candidates[c]);
+			predicted[c] = surrogate.predict(descriptors[c]);
+			novelty[c] = surrogate.novelty(descriptors[c]);
+		});
+		int explored = (int) Math.round(count * SURROGATE_EXPLORATION);
+		int[] kept = IntStream.concat(IntStream.range(0, explored),
+				IntStream.range(explored, candidates.length).boxed()
+						.sorted((a, b) -> predicted[a] != predicted[b] ? Double.compare(predicted[b], predicted[a])
+								: novelty[b] - novelty[a])
+						.limit(count - explored)
+						.mapToInt(c -> c))
+				.sorted().toArray();
+		metrics.screenedOut(candidates.length - count);
+		return kept;
+	}
+
+	static LockstepBoard newBoard(GameController controller, int seed) {
+		return BOARD_TYPE == BoardTypes.BREAKOUT ? new BreakoutEngine(controller, seed)
+				: new PacmanEngine(controller, seed);
+	}
+
+	// Inputs of the boards' states that can be other than 0, for pruning
+	static int usedInputs() {
+		return BOARD_TYPE == BoardTypes.BREAKOUT ? Commons.BREAKOUT_STATE_SIZE
+				: Commons.PACMAN_ENCODING.getUsedInputs();
+	}
+
+	// Starts the history with the first generation, or returns null if it can't
+	// be written
+	private static HistoryWriter startHistory(FeedforwardNeuralNetwork[] population, long masterSeed) {
+		if (!WRITE_HISTORY)
+			return null;
+		HistoryWriter history = null;
+		try {
+			history = new HistoryWriter(HISTORY_FILENAME, masterSeed, population[0].getNeuralNetwork().length,
+					POPULATION_SIZE, HISTORY_KEYFRAME_INTERVAL);
+			history.writeGeneration(1, population);
+			return history;
+		} catch (IOException e) {
+			System.out.println("An error occurred while trying to write the history, running without it.");
+			e.printStackTrace();
+			if (history != null)
+				closeHistory(history);
+			return null;
+		}
+	}
+
+	// Returns the history, or null if writing to it failed
+	private static HistoryWriter writeHistory(HistoryWriter history, int generation,
+			FeedforwardNeuralNetwork[] population, int[] elites, int[] parents1, int[] parents2, long[] seeds,
+			double mutationRate) {
+		try {
+			history.writeGeneration(generation, population, elites, parents1, parents2, seeds, mutationRate);
+			return history;
+		} catch (IOException e) {
+			System.out.println("An error occurred while trying to write the history, running without it.");
+			e.printStackTrace();
+			closeHistory(history);
+			return null;
+		}
+	}
+
+	private static void closeHistory(HistoryWriter history) {
+		try {
+			history.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static int indexOf(FeedforwardNeuralNetwork[] population, FeedforwardNeuralNetwork individual) {
+		for (int i = 0; i < population.length; i++)
+			if (population[i] == individual)
+				return i;
+		throw new IllegalArgumentException("The individual isn't in the population");
+	}
+
+	private static MetricsServer startMetricsServer() {
+		if (Commons.METRICS_PORT == 0)
+			return null;
+		try {
+			MetricsServer server = new MetricsServer(metrics, Commons.METRICS_PORT);
+			System.out.println("Serving metrics at http://localhost:" + server.getPort() + "/metrics");
+			return server;
+		} catch (IOException e) {
+			System.out.println("Failed to start the metrics server, running without it");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// Fitness statistics of a population sorted from best to worst
+	private static void setFitnessStatistics(GenerationEvent event, FeedforwardNeuralNetwork[] population) {
+		int size = population.length;
+		double sum = 0;
+		for (FeedforwardNeuralNetwork individual : population)
+			sum += individual.getFitness();
+		event.bestFitness = population[0].getFitness();
+		event.worstFitness = population[size - 1].getFitness();
+		event.meanFitness = sum / size;
+		event.medianFitness = medianFitness(population);
 	}
 
-	private static FeedforwardNeuralNetwork generateNetwork() {
+	private static double medianFitness(FeedforwardNeuralNetwork[] sortedPopulation) {
+		int size = sortedPopulation.length;
+		return size % 2 == 1 ? sortedPopulation[size / 2].getFitness()
+				: (sortedPopulation[size / 2 - 1].getFitness() + sortedPopulation[size / 2].getFitness()) / 2;
+	}
+
+	// Plays the network once more on a headless board and records its actions
+	private static ActionLog recordEpisode(FeedforwardNeuralNetwork network) {
+		if (BOARD_TYPE == BoardTypes.BREAKOUT) {
+			// Breakout networks only ever choose LEFT or RIGHT, so one bit is enough
+			ActionLog log = new ActionLog(Commons.SEED, BreakoutEngine.LEFT, 1);
+			BreakoutEngine board = new BreakoutEngine(log.record(network), Commons.SEED);
+			// Every tick has to be played to be recorded
+			board.setCycleDetection(false);
+			board.runSimulation();
+			return log;
+		}
+		ActionLog log = new ActionLog(Commons.SEED, PacmanEngine.NONE, 3);
+		new PacmanEngine(log.record(network), Commons.SEED).runSimulation();
+		return log;
+	}
+
+	private static FeedforwardNeuralNetwork generateNetwork(SplittableRandom random) {
 		return BOARD_TYPE == BoardTypes.BREAKOUT
 				? new FeedforwardNeuralNetwork(Commons.BREAKOUT_STATE_SIZE, Commons.BREAKOUT_HIDDEN_DIM,
-						Commons.BREAKOUT_NUM_ACTIONS)
+						Commons.BREAKOUT_NUM_ACTIONS, random)
 				: new FeedforwardNeuralNetwork(Commons.PACMAN_STATE_SIZE, Commons.PACMAN_HIDDEN_DIM,
-						Commons.PACMAN_NUM_ACTIONS);
+						Commons.PACMAN_NUM_ACTIONS, random);
 	}
 
 	private static FeedforwardNeuralNetwork generateNetwork(double[] values) {
@@ -105,6 +405,153 @@ public class GeneticAlgorithm {
 						Commons.PACMAN_NUM_ACTIONS, values);
 	}
 
+	// Runs the simulation of every individual. Breakout individuals are all
+	// simulated together in a single BreakoutBatch, which only plays the single
+	// moving brick
+	private static void evaluate(FeedforwardNeuralNetwork[] individuals) {
+		metrics.queued(individuals.length);
+		if (BOARD_TYPE == BoardTypes.BREAKOUT && BATCH_EVALUATION && !Commons.BREAKOUT_WALL_MODE) {
+			BreakoutBatch batch = new BreakoutBatch(new PopulationController(individuals), individuals.length,
+					Commons.SEED);
+			long start = System.nanoTime();
+			batch.runSimulation();
+			long ticks = 0;
+			for (int i = 0; i < individuals.length; i++)
+				ticks += batch.getTime(i);
+			metrics.evaluated(individuals.length, ticks, System.nanoTime() - start);
+			for (int i = 0; i < individuals.length; i++) {
+				individuals[i].setFitness(batch.getFitness(i));
+				if (Commons.JFR_EVENTS) {
+					EvaluationEvent event = new EvaluationEvent();
+					event.batched = true;
+					commit(event, individuals[i], batch.getTime(i));
+				}
+			}
+		} else if (SUCCESSIVE_HALVING) {
+			evaluateByHalving(individuals);
+		} else {
+			for (FeedforwardNeuralNetwork individual : individuals) {
+				EvaluationEvent event = Commons.JFR_EVENTS ? new EvaluationEvent() : null;
+				if (event != null)
+					event.begin();
+				ScheduledFuture<?> alarm = watch(individual.getBoard(), 2 * Commons.PACMAN_MAX_MILLIS);
+				long start = System.nanoTime();
+				individual.runSimulation();
+				metrics.evaluated(1, individual.getBoard().getTicks(), System.nanoTime() - start);
+				if (alarm != null)
+					alarm.cancel(false);
+				if (event != null)
+					commit(event, individual, individual.getBoard().getTicks());
+			}
+		}
+	}
+
+	// Episodes stopped by a rung are resumed by the next one instead of being
+	// played again, and the watchdog only gives a resumed Pacman episode the time
+	// it hasn't used yet. Individuals left behind count as truncated and are
+	// ranked below every individual promoted from their rung, see
+	// rankBelowPromoted. The others get the fitness of their whole episode
+	private static void evaluateByHalving(FeedforwardNeuralNetwork[] individuals) {
+		int fullBudget = BOARD_TYPE == BoardTypes.BREAKOUT ? Commons.BREAKOUT_MAX_TIME + 1 : Commons.PACMAN_MAX_STEPS;
+		List<FeedforwardNeuralNetwork> running = new ArrayList<>(Arrays.asList(individuals));
+		List<List<FeedforwardNeuralNetwork>> dropped = new ArrayList<>();
+		List<List<FeedforwardNeuralNetwork>> promotedByRung = new ArrayList<>();
+		boolean firstRung = true;
+		for (long budget = HALVING_FIRST_BUDGET; !running.isEmpty(); budget *= HALVING_ETA) {
+			int rungBudget = (int) Math.min(budget, fullBudget);
+			long ticks = 0;
+			long nanos = 0;
+			List<FeedforwardNeuralNetwork> stopped = new ArrayList<>();
+			for (FeedforwardNeuralNetwork individual : running) {
+				BudgetedBoard board = (BudgetedBoard) individual.getBoard();
+				int ticksBefore = firstRung ? 0 : board.getTicks();
+				board.setTickBudget(rungBudget);
+				long played = firstRung || !(board instanceof PacmanEngine) ? 0
+						: ((PacmanEngine) board).getPlayedMillis();
+				ScheduledFuture<?> alarm = watch(board, Math.max(0, 2 * Commons.PACMAN_MAX_MILLIS - played));
+				long start = System.nanoTime();
+				if (firstRung)
+					individual.runSimulation();
+				else
+					individual.resumeSimulation();
+				nanos += System.nanoTime() - start;
+				if (alarm != null)
+					alarm.cancel(false);
+				ticks += board.getTicks() - ticksBefore;
+				// Only episodes stopped by this rung's budget can carry on
+				if (individual.isTruncated() && board.getTicks() >= rungBudget && rungBudget < fullBudget)
+					stopped.add(individual);
+			}
+			firstRung = false;
+			// The best of the stopped episodes go on to the next rung
+			stopped.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
+			int promotedCount = (stopped.size() + HALVING_ETA - 1) / HALVING_ETA;
+			List<FeedforwardNeuralNetwork> promoted = new ArrayList<>(stopped.subList(0, promotedCount));
+			dropped.add(new ArrayList<>(stopped.subList(promotedCount, stopped.size())));
+			promotedByRung.add(promoted);
+			int finished = running.size() - promoted.size();
+			metrics.evaluated(finished, ticks, nanos);
+			if (Commons.JFR_EVENTS) {
+				for (FeedforwardNeuralNetwork individual : running)
+					if (!promoted.contains(individual))
+						commit(new EvaluationEvent(), individual, individual.getBoard().getTicks());
+			}
+			running = promoted;
+		}
+		// From the last rung back, so that the individuals promoted from a rung
+		// already rank where their own episode left them
+		for (int rung = dropped.size() - 1; rung >= 0; rung--)
+			rankBelowPromoted(dropped.get(rung), promotedByRung.get(rung));
+	}
+
+	/**
+	 * The fitness of an episode stopped early isn't comparable with that of a
+	 * longer one: a Breakout episode loses fitness with every tick it lasts, so an
+	 * individual dropped at a rung could outrank one with as many kills that was
+	 * promoted and played on. When a dropped individual isn't below every
+	 * promoted one, every dropped fitness of the rung is lowered by the same
+	 * amount, which keeps their order between them but puts them all below.
+	 */
+	private static void rankBelowPromoted(List<FeedforwardNeuralNetwork> dropped,
+			List<FeedforwardNeuralNetwork> promoted) {
+		if (dropped.isEmpty() || promoted.isEmpty())
+			return;
+		double lowestPromoted = Double.POSITIVE_INFINITY;
+		for (FeedforwardNeuralNetwork individual : promoted)
+			lowestPromoted = Math.min(lowestPromoted, individual.getFitness());
+		double highestDropped = Double.NEGATIVE_INFINITY;
+		for (FeedforwardNeuralNetwork individual : dropped)
+			highestDropped = Math.max(highestDropped, individual.getFitness());
+		// The population is sorted on the integer part of the difference, so the
+		// gap is at least 1
+		if (highestDropped > lowestPromoted - 1) {
+			double shift = highestDropped - lowestPromoted + 1;
+			for (FeedforwardNeuralNetwork individual : dropped)
+				individual.setFitness(individual.getFitness() - shift);
+		}
+	}
+
+	/**
+	 * Cancels a Pacman episode still running after millis. The board checks its
+	 * own budget, the watchdog also covers a controller that stalls between two
+	 * checks. Breakout episodes are only bounded by ticks, so that their fitness
+	 * never depends on the load of the machine, and aren't watched: returns null
+	 */
+	private static ScheduledFuture<?> watch(Board board, long millis) {
+		return board instanceof PacmanEngine ? watchdog.watch(board, millis) : null;
+	}
+
+	private static void commit(EvaluationEvent event, FeedforwardNeuralNetwork individual, int ticks) {
+		if (event.shouldCommit()) {
+			event.genomeId = individual.getId();
+			event.seed = Commons.SEED;
+			event.ticks = ticks;
+			event.fitness = individual.getFitness();
+			event.truncated = individual.isTruncated();
+			event.commit();
+		}
+	}
+
 	public static void main(String[] args) {
 		new GeneticAlgorithm();
 		if (BOARD_TYPE == BoardTypes.PACMAN)
@@ -116,12 +563,23 @@ public class GeneticAlgorithm {
 	}
 
 	// Select the index of a parent from the population using tournament selection
-	private int selectParent() {
+	private static int selectParent(SplittableRandom random) {
 		return random.nextInt(TOURNAMENT_SIZE);
 	}
 
+	/**
+	 * Crossover and mutation of the child with the given seed (see
+	 * RandomStreams.seed), so that HistoryReader can breed it again from its
+	 * parents, the seed and the mutation rate alone.
+	 */
+	static double[] breed(double[] parent1, double[] parent2, long seed, double mutationRate) {
+		double[] child = crossover(parent1, parent2, RandomStreams.stream(seed, Operator.CROSSOVER));
+		mutate(child, mutationRate, RandomStreams.stream(seed, Operator.MUTATION));
+		return child;
+	}
+
 	// Crossover two parents to create a new child
-	private double[] crossover(double[] parent1, double[] parent2) {
+	static double[] crossover(double[] parent1, double[] parent2, SplittableRandom random) {
 		double[] childValues = new double[parent1.length];
 		for (int i = 0; i < childValues.length; i++) {
 			if (random.nextDouble() < 0.5) {
@@ -133,28 +591,34 @@ public class GeneticAlgorithm {
 		return childValues;
 	}
 
-	// Mutate a FeedforwardNeuralNetwork by randomly changing one of its positions
-	private void mutate(double[] feedforwardNeuralNetwork) {
+	// Mutate a FeedforwardNeuralNetwork by randomly changing all of its positions
+	static void mutate(double[] feedforwardNeuralNetwork, double mutationRate, SplittableRandom random) {
 		for (int i = 0; i < feedforwardNeuralNetwork.length; i++) {
-			// Random value between -MUTATION_RATE / 2 and MUTATION_RATE / 2
-			double mutationValue = (random.nextDouble() - 0.5) * (MUTATION_RATE + mutationRateModifier);
+			// Random value between -mutationRate / 2 and mutationRate / 2
+			double mutationValue = (random.nextDouble() - 0.5) * mutationRate;
 			feedforwardNeuralNetwork[i] += mutationValue;
 		}
 	}
 
 	/**
-	 * Writes the contents of the population's neural network array to a file
+	 * Writes the contents of the population's neural network array to a file.
+	 * Pruned networks are written as {length; index: value, ...} with only the
+	 * values that aren't 0
 	 */
-	private void writePopulation(FeedforwardNeuralNetwork[] population, String filename) {
+	static void writePopulation(FeedforwardNeuralNetwork[] population, String filename) {
 		try {
 			PrintWriter writer = new PrintWriter(new File(filename));
 
 			for (FeedforwardNeuralNetwork individual : population) {
 				double[] network = individual.getNeuralNetwork();
-				writer.println(Arrays.toString(network));
+				if (individual.isSparse())
+					writer.println(toSparseString(network));
+				else
+					writer.println(Arrays.toString(network));
 			}
 
 			writer.close();
+			metrics.checkpointWritten();
 		} catch (FileNotFoundException e) {
 			System.out.println("An error occurred while trying to write to the file.");
 			e.printStackTrace();
@@ -174,15 +638,13 @@ public class GeneticAlgorithm {
 			int index = 0;
 			while (scanner.hasNextLine() && index < populationSize) {
 				String line = scanner.nextLine();
-				// Remove brackets
-				line = line.substring(1, line.length() - 1);
-				String[] values = line.split(", ");
-				double[] network = new double[values.length];
-				for (int i = 0; i < values.length; i++) {
-					network[i] = Double.parseDouble(values[i]);
-				}
-				// Create the new network and run its simulation
+				boolean sparse = line.startsWith("{");
+				double[] network = sparse ? parseSparse(line) : parseDense(line);
+				// Create the new network and run its simulation. Pruned networks are
+				// kept sparse, with every weight of the file
 				FeedforwardNeuralNetwork newNetwork = generateNetwork(network);
+				if (sparse)
+					newNetwork = newNetwork.prune(0, false, newNetwork.getInputDim());
 				newNetwork.runSimulation();
 				population[index++] = newNetwork;
 			}
@@ -197,6 +659,44 @@ public class GeneticAlgorithm {
 		}
 	}
 
+	private static double[] parseDense(String line) {
+		// Remove brackets
+		line = line.substring(1, line.length() - 1);
+		String[] values = line.split(", ");
+		double[] network = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			network[i] = Double.parseDouble(values[i]);
+		}
+		return network;
+	}
+
+	static String toSparseString(double[] network) {
+		StringBuilder line = new StringBuilder("{").append(network.length).append(";");
+		String separator = " ";
+		for (int i = 0; i < network.length; i++) {
+			if (network[i] != 0) {
+				line.append(separator).append(i).append(": ").append(network[i]);
+				separator = ", ";
+			}
+		}
+		return line.append("}").toString();
+	}
+
+	private static double[] parseSparse(String line) {
+		// Remove braces
+		line = line.substring(1, line.length() - 1);
+		int lengthEnd = line.indexOf(';');
+		double[] network = new double[Integer.parseInt(line.substring(0, lengthEnd))];
+		String entries = line.substring(lengthEnd + 1).trim();
+		if (entries.isEmpty())
+			return network;
+		for (String entry : entries.split(", ")) {
+			int colon = entry.indexOf(':');
+			network[Integer.parseInt(entry.substring(0, colon))] = Double.parseDouble(entry.substring(colon + 1).trim());
+		}
+		return network;
+	}
+
 	public FeedforwardNeuralNetwork[] readFile(String filename) throws FileNotFoundException {
 		return readFile(filename, POPULATION_SIZE);
 	}
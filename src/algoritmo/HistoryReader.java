@@ -0,0 +1,247 @@
+package algoritmo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Reads an archive written by HistoryWriter. Generations are found through the
+ * index, and an individual that isn't in a keyframe is bred again from its
+ * ancestors in the last keyframe before it. Only the ancestors it actually has
+ * are rebuilt, and only their genomes are read from the keyframe.
+ */
+public class HistoryReader implements Closeable {
+
+	private final RandomAccessFile data;
+	private final RandomAccessFile index;
+	private final long masterSeed;
+	private final int genomeLength;
+	private final int populationSize;
+	private final int firstGeneration;
+	private final int generations;
+
+	public HistoryReader(String filename) throws IOException {
+		data = new RandomAccessFile(filename, "r");
+		index = new RandomAccessFile(filename + ".index", "r");
+		if (data.readInt() != HistoryWriter.MAGIC || data.readInt() != HistoryWriter.VERSION) {
+			close();
+			throw new IOException(filename + " isn't a history archive of this version");
+		}
+		masterSeed = data.readLong();
+		genomeLength = data.readInt();
+		populationSize = data.readInt();
+		generations = (int) (index.length() / HistoryWriter.INDEX_ENTRY);
+		firstGeneration = generations == 0 ? 0 : readRecord(0).generation;
+	}
+
+	public int getFirstGeneration() {
+		return firstGeneration;
+	}
+
+	public int getLastGeneration() {
+		return firstGeneration + generations - 1;
+	}
+
+	public long getMasterSeed() {
+		return masterSeed;
+	}
+
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	public double getFitness(int generation, int individual) throws IOException {
+		return record(generation).fitness[checkIndividual(individual)];
+	}
+
+	public double getMutationRate(int generation) throws IOException {
+		return record(generation).mutationRate;
+	}
+
+	/**
+	 * Indices of the parents of an individual in the generation before: one for
+	 * an elite, which is the same individual, two for a child and none for an
+	 * individual of the first generation
+	 */
+	public int[] getParents(int generation, int individual) throws IOException {
+		Record record = record(generation);
+		checkIndividual(individual);
+		if (record.elites == null)
+			return new int[0];
+		if (individual < record.elites.length)
+			return new int[] { record.elites[individual] };
+		int child = individual - record.elites.length;
+		return new int[] { record.parents1[child], record.parents2[child] };
+	}
+
+	public double[] getGenome(int generation, int individual) throws IOException {
+		Record record = record(generation);
+		checkIndividual(individual);
+		int keyframe = keyframeOf(generation);
+
+		// Marks the ancestors of the individual in every generation since the
+		// keyframe, from the last generation back
+		Record[] records = new Record[generation - keyframe + 1];
+		boolean[][] needed = new boolean[records.length][];
+		records[records.length - 1] = record;
+		needed[records.length - 1] = new boolean[populationSize];
+		needed[records.length - 1][individual] = true;
+		for (int g = records.length - 1; g > 0; g--) {
+			Record current = records[g];
+			needed[g - 1] = new boolean[populationSize];
+			for (int i = 0; i < populationSize; i++) {
+				if (!needed[g][i])
+					continue;
+				if (i < current.elites.length) {
+					needed[g - 1][current.elites[i]] = true;
+				} else {
+					needed[g - 1][current.parents1[i - current.elites.length]] = true;
+					needed[g - 1][current.parents2[i - current.elites.length]] = true;
+				}
+			}
+			records[g - 1] = record(keyframe + g - 1);
+		}
+
+		// Then breeds them again from the keyframe on
+		double[][] genomes = new double[populationSize][];
+		for (int i = 0; i < populationSize; i++) {
+			if (needed[0][i])
+				genomes[i] = readGenome(records[0], i);
+		}
+		for (int g = 1; g < records.length; g++) {
+			Record current = records[g];
+			double[][] next = new double[populationSize][];
+			for (int i = 0; i < populationSize; i++) {
+				if (!needed[g][i])
+					continue;
+				if (i < current.elites.length) {
+					next[i] = genomes[current.elites[i]];
+				} else {
+					int child = i - current.elites.length;
+					next[i] = GeneticAlgorithm.breed(genomes[current.parents1[child]],
+							genomes[current.parents2[child]], current.seeds[child], current.mutationRate);
+				}
+			}
+			genomes = next;
+		}
+		return genomes[individual].clone();
+	}
+
+	private int keyframeOf(int generation) throws IOException {
+		index.seek((long) (generation - firstGeneration) * HistoryWriter.INDEX_ENTRY + 8);
+		return index.readInt();
+	}
+
+	private int checkIndividual(int individual) {
+		if (individual < 0 || individual >= populationSize) {
+			throw new IllegalArgumentException("No individual " + individual);
+		}
+		return individual;
+	}
+
+	// A generation's record, without the genomes of a keyframe
+	private static class Record {
+		int generation;
+		boolean keyframe;
+		double mutationRate = Double.NaN;
+		int[] elites, parents1, parents2;
+		long[] seeds;
+		double[] fitness;
+		long genomesOffset;
+	}
+
+	private Record record(int generation) throws IOException {
+		if (generation < firstGeneration || generation > getLastGeneration()) {
+			throw new IllegalArgumentException("No generation " + generation + " in the archive");
+		}
+		return readRecord(generation - firstGeneration);
+	}
+
+	private Record readRecord(int entry) throws IOException {
+		index.seek((long) entry * HistoryWriter.INDEX_ENTRY);
+		data.seek(index.readLong());
+		Record record = new Record();
+		byte flags = data.readByte();
+		record.generation = data.readInt();
+		record.keyframe = (flags & HistoryWriter.GENOMES) != 0;
+		if ((flags & HistoryWriter.LINEAGE) != 0) {
+			record.mutationRate = data.readDouble();
+			record.elites = new int[data.readInt()];
+			for (int i = 0; i < record.elites.length; i++)
+				record.elites[i] = data.readInt();
+			int children = data.readInt();
+			record.parents1 = new int[children];
+			record.parents2 = new int[children];
+			record.seeds = new long[children];
+			for (int i = 0; i < children; i++) {
+				record.parents1[i] = data.readInt();
+				record.parents2[i] = data.readInt();
+				record.seeds[i] = data.readLong();
+			}
+		}
+		record.fitness = new double[populationSize];
+		for (int i = 0; i < populationSize; i++)
+			record.fitness[i] = data.readDouble();
+		record.genomesOffset = data.getFilePointer();
+		return record;
+	}
+
+	private double[] readGenome(Record keyframe, int individual) throws IOException {
+		data.seek(keyframe.genomesOffset + 8L * genomeLength * individual);
+		byte[] bytes = new byte[8 * genomeLength];
+		data.readFully(bytes);
+		double[] genome = new double[genomeLength];
+		for (int i = 0, b = 0; i < genomeLength; i++, b += 8) {
+			long bits = 0;
+			for (int k = 0; k < 8; k++)
+				bits = bits << 8 | (bytes[b + k] & 0xFF);
+			genome[i] = Double.longBitsToDouble(bits);
+		}
+		return genome;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			data.close();
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Prints the best fitness and the lineage of every generation of an archive,
+	 * or with a generation and an individual, that individual's genome in the
+	 * format of the population files. Arguments: archive [generation individual]
+	 */
+	public static void main(String[] args) throws IOException {
+		try (HistoryReader reader = new HistoryReader(args[0])) {
+			if (args.length > 2) {
+				System.out.println(Arrays.toString(
+						reader.getGenome(Integer.parseInt(args[1]), Integer.parseInt(args[2]))));
+				return;
+			}
+			System.out.println("Master seed: " + reader.getMasterSeed());
+			for (int g = reader.getFirstGeneration(); g <= reader.getLastGeneration(); g++) {
+				Record record = reader.record(g);
+				double best = Double.NEGATIVE_INFINITY;
+				for (double fitness : record.fitness)
+					best = Math.max(best, fitness);
+				int parents = 0;
+				if (record.parents1 != null) {
+					boolean[] parent = new boolean[reader.populationSize];
+					for (int i = 0; i < record.parents1.length; i++) {
+						parent[record.parents1[i]] = true;
+						parent[record.parents2[i]] = true;
+					}
+					for (boolean isParent : parent)
+						if (isParent)
+							parents++;
+				}
+				System.out.println("Generation " + g + ": " + best + (record.keyframe ? " (keyframe)" : "")
+						+ (parents > 0 ? ", children bred from " + parents + " parents" : ""));
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package algoritmo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Appends every generation of a run to a history archive, which HistoryReader
+ * can rebuild any individual from. Genomes are only stored in keyframes, the
+ * first generation and then one every keyframeInterval generations. The other
+ * generations only store how they were bred from the one before: the indices
+ * of the elites that survived and, for each child, its parents and the seed of
+ * its crossover and mutation (see GeneticAlgorithm.breed).
+ *
+ * The archive is made of two files. The first one starts with a header (MAGIC,
+ * VERSION, the run's master seed, genome length and population size) followed by one record per
+ * generation:
+ * <ul>
+ * <li>byte flags (LINEAGE and/or GENOMES) and int generation</li>
+ * <li>with LINEAGE: double mutation rate, int elite count and the elites'
+ * indices in the previous generation, int child count and each child's two
+ * parent indices and long seed</li>
+ * <li>the fitness of every individual</li>
+ * <li>with GENOMES: the genome of every individual</li>
+ * </ul>
+ * The index file has INDEX_ENTRY bytes per generation: the long offset of its
+ * record and the int generation of the keyframe it is rebuilt from. Records
+ * are written before their index entry and flushed with it, so a run that
+ * stops keeps every generation the index lists.
+ */
+public class HistoryWriter implements Closeable {
+
+	static final int MAGIC = 0x50494148;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 24;
+	static final int INDEX_ENTRY = 12;
+	static final byte LINEAGE = 1;
+	static final byte GENOMES = 2;
+
+	private final DataOutputStream data;
+	private final DataOutputStream index;
+	private final int genomeLength;
+	private final int populationSize;
+	private final int keyframeInterval;
+	private long offset = HEADER_SIZE;
+	private int firstGeneration = -1;
+	private int lastKeyframe;
+
+	/**
+	 * Starts a new archive, replacing any archive with the same name
+	 *
+	 * @param filename         name of the records file, the index is the same name
+	 *                         followed by ".index"
+	 * @param masterSeed       seed the run's RandomStreams were derived from
+	 * @param keyframeInterval generations between two keyframes, 0 to only store
+	 *                         the genomes of the first generation
+	 */
+	public HistoryWriter(String filename, long masterSeed, int genomeLength, int populationSize,
+			int keyframeInterval) throws IOException {
+		this.genomeLength = genomeLength;
+		this.populationSize = populationSize;
+		this.keyframeInterval = keyframeInterval;
+		data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename + ".index")));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(masterSeed);
+		data.writeInt(genomeLength);
+		data.writeInt(populationSize);
+		data.flush();
+	}
+
+	/** Writes the first generation of a run, which is always a keyframe */
+	public void writeGeneration(int generation, FeedforwardNeuralNetwork[] population) throws IOException {
+		if (firstGeneration >= 0) {
+			throw new IllegalStateException("Only the first generation has no parents");
+		}
+		firstGeneration = generation;
+		write(generation, population, null, null, null, null, 0);
+	}
+
+	/**
+	 * Writes a generation bred from the one written before it. Its first
+	 * elites.length individuals are the elites and the others are the children,
+	 * in order. Indices refer to the order the previous generation was written
+	 * in.
+	 */
+	public void writeGeneration(int generation, FeedforwardNeuralNetwork[] population, int[] elites,
+			int[] parents1, int[] parents2, long[] seeds, double mutationRate) throws IOException {
+		if (firstGeneration < 0) {
+			throw new IllegalStateException("The first generation must be written first");
+		}
+		if (elites.length + seeds.length != populationSize) {
+			throw new IllegalArgumentException("Elites and children don't make up the population");
+		}
+		write(generation, population, elites, parents1, parents2, seeds, mutationRate);
+	}
+
+	private void write(int generation, FeedforwardNeuralNetwork[] population, int[] elites, int[] parents1,
+			int[] parents2, long[] seeds, double mutationRate) throws IOException {
+		if (population.length != populationSize) {
+			throw new IllegalArgumentException("Expected " + populationSize + " individuals");
+		}
+		int relative = generation - firstGeneration;
+		boolean keyframe = elites == null || keyframeInterval > 0 && relative % keyframeInterval == 0;
+		if (keyframe)
+			lastKeyframe = generation;
+
+		data.writeByte((elites != null ? LINEAGE : 0) | (keyframe ? GENOMES : 0));
+		data.writeInt(generation);
+		if (elites != null) {
+			data.writeDouble(mutationRate);
+			data.writeInt(elites.length);
+			for (int elite : elites)
+				data.writeInt(elite);
+			data.writeInt(seeds.length);
+			for (int i = 0; i < seeds.length; i++) {
+				data.writeInt(parents1[i]);
+				data.writeInt(parents2[i]);
+				data.writeLong(seeds[i]);
+			}
+		}
+		for (FeedforwardNeuralNetwork individual : population)
+			data.writeDouble(individual.getFitness());
+		if (keyframe) {
+			for (FeedforwardNeuralNetwork individual : population) {
+				double[] genome = individual.getNeuralNetwork();
+				if (genome.length != genomeLength) {
+					throw new IllegalArgumentException("Expected genomes of " + genomeLength + " values");
+				}
+				for (double value : genome)
+					data.writeDouble(value);
+			}
+		}
+		data.flush();
+
+		index.writeLong(offset);
+		index.writeInt(lastKeyframe);
+		index.flush();
+		// DataOutputStream.size() is an int, which a Pacman archive outgrows
+		offset += 5 + (elites == null ? 0 : 16 + 4L * elites.length + 16L * seeds.length) + 8L * populationSize
+				+ (keyframe ? 8L * populationSize * genomeLength : 0);
+	}
+
+	/** Bytes written to both files so far */
+	public long getBytesWritten() {
+		return offset + index.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			data.close();
+		} finally {
+			index.close();
+		}
+	}
+}
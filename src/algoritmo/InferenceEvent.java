@@ -0,0 +1,20 @@
+package algoritmo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One call of PopulationController, which runs the networks of every live game
+ * of a batch for a tick. There is one per tick, so these are only emitted when
+ * Commons.JFR_INFERENCE_EVENTS is also set.
+ */
+@Name("algoritmo.Inference")
+@Label("Inference Batch")
+@Category({ "Projeto IA", "Inference" })
+public class InferenceEvent extends Event {
+
+	@Label("States")
+	int states;
+}
@@ -0,0 +1,46 @@
+package algoritmo;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import pacman.LookaheadController;
+import pacman.PacmanEngine;
+import utils.ActionLog;
+import utils.Commons;
+import utils.GameController;
+
+/**
+ * Plays an episode with a LookaheadController on a headless board and records
+ * it to lookahead.actions, which Pacman.main can replay. Arguments: threads,
+ * milliseconds per move, rollout depth, maximum number of moves and "network"
+ * to use the best network of pacman.txt as the rollout policy
+ */
+public class Lookahead {
+
+	public static void main(String[] args) throws IOException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		long millisPerMove = args.length > 1 ? Long.parseLong(args[1]) : 20;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		int maxMoves = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		Supplier<GameController> policy = null;
+		if (args.length > 4 && args[4].equals("network")) {
+			double[] values = GeneticAlgorithm.readFile("pacman.txt", 1)[0].getNeuralNetwork();
+			policy = () -> new FeedforwardNeuralNetwork(Commons.PACMAN_STATE_SIZE, Commons.PACMAN_HIDDEN_DIM,
+					Commons.PACMAN_NUM_ACTIONS, values);
+		}
+
+		LookaheadController controller = new LookaheadController(threads, millisPerMove, depth, policy);
+		ActionLog log = new ActionLog(Commons.SEED, PacmanEngine.NONE, 3);
+		PacmanEngine board = new PacmanEngine(log.record(controller), Commons.SEED);
+		board.setBudget(maxMoves, 24 * 60 * 60 * 1000);
+		controller.attach(board);
+		board.runSimulation();
+		controller.shutdown();
+
+		System.out.printf("Fitness %.2f in %d moves, %d lives left%s%n", board.getFitness(), log.size(),
+				board.getLives(), board.isTruncated() ? " (move limit reached)" : "");
+		System.out.printf("%d rollouts of %d ticks, %.0f rollouts/s with %d threads%n", controller.getRollouts(),
+				depth, controller.getRolloutsPerSecond(), threads);
+		log.write("lookahead.actions");
+	}
+}
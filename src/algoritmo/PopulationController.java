@@ -0,0 +1,36 @@
+package algoritmo;
+
+import utils.BatchGameController;
+import utils.Commons;
+
+/**
+ * Batched policy where every game is played by its own network. Game i is
+ * played by networks[i]. The states are read in place from the batch, without
+ * copying them or allocating any layers.
+ */
+public class PopulationController implements BatchGameController {
+	private FeedforwardNeuralNetwork[] networks;
+
+	public PopulationController(FeedforwardNeuralNetwork[] networks) {
+		this.networks = networks;
+	}
+
+	@Override
+	public void nextMoves(int[] states, int[] games, int count, int[] moves) {
+		InferenceEvent event = null;
+		if (Commons.JFR_EVENTS && Commons.JFR_INFERENCE_EVENTS) {
+			event = new InferenceEvent();
+			event.begin();
+		}
+		int offset = 0;
+		for (int k = 0; k < count; k++) {
+			FeedforwardNeuralNetwork network = networks[games[k]];
+			moves[k] = network.nextMove(states, offset);
+			offset += network.getInputDim();
+		}
+		if (event != null && event.shouldCommit()) {
+			event.states = count;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package algoritmo;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+/**
+ * Prints how the best network of a population file holds up when pruned: for
+ * every threshold, with magnitude pruning alone and with structural pruning,
+ * the weights that are left, the fitness and the size of its line in the file.
+ * The time nextMove() takes on pruned networks is measured by
+ * InferenceBenchmark in the benchmarks module, for example with
+ * java -jar benchmarks/target/benchmarks.jar InferenceBenchmark -p pruning=0.1
+ * Arguments: [population file] [thresholds...]
+ */
+public class Pruning {
+
+	private static final double[] THRESHOLDS = { 0, 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5 };
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String filename = args.length > 0 ? args[0] : GeneticAlgorithm.FILENAME;
+		double[] thresholds = THRESHOLDS;
+		if (args.length > 1) {
+			thresholds = new double[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				thresholds[i - 1] = Double.parseDouble(args[i]);
+		}
+		FeedforwardNeuralNetwork network = GeneticAlgorithm.readFile(filename, 1)[0];
+
+		int weights = network.getNonZeroWeights();
+		double fitness = network.getFitness();
+		System.out.println("Network of " + weights + " weights, fitness " + fitness);
+		System.out.println("threshold\tpruning\tweights\tsparsity\tfitness\tchange\tline bytes");
+		System.out.println("-\tdense\t" + weights + "\t0.0%\t" + fitness + "\t0.0\t"
+				+ Arrays.toString(network.getNeuralNetwork()).length());
+		for (double threshold : thresholds) {
+			for (boolean structural : new boolean[] { false, true }) {
+				FeedforwardNeuralNetwork pruned = network.prune(threshold, structural, GeneticAlgorithm.usedInputs());
+				pruned.runSimulation();
+				int kept = pruned.getNonZeroWeights();
+				System.out.println(threshold + "\t" + (structural ? "structural" : "magnitude") + "\t" + kept + "\t"
+						+ String.format("%.1f%%", 100.0 * (weights - kept) / weights) + "\t" + pruned.getFitness()
+						+ "\t" + (pruned.getFitness() - fitness) + "\t"
+						+ GeneticAlgorithm.toSparseString(pruned.getNeuralNetwork()).length());
+			}
+		}
+	}
+}
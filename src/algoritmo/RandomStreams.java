@@ -0,0 +1,59 @@
+package algoritmo;
+
+import java.util.SplittableRandom;
+
+/**
+ * The random numbers of a run, derived from a single master seed. Every
+ * individual of every generation has a seed of its own, and each genetic
+ * operator applied to it draws from a separate SplittableRandom seeded from
+ * that. Streams only depend on the master seed and on what they are for, never
+ * on the thread that asks for them or on the order they are asked in, so
+ * individuals can be bred on any number of threads without sharing a random
+ * and a run is repeated exactly by giving it the same master seed.
+ */
+public class RandomStreams {
+
+	public enum Operator {
+		INITIALIZATION, SELECTION, CROSSOVER, MUTATION
+	}
+
+	// The increment of SplittableRandom's default generator
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long masterSeed;
+
+	public RandomStreams(long masterSeed) {
+		this.masterSeed = masterSeed;
+	}
+
+	/** A master seed for a run that wasn't given one */
+	public static long newMasterSeed() {
+		return new SplittableRandom().nextLong();
+	}
+
+	public long getMasterSeed() {
+		return masterSeed;
+	}
+
+	// Seed of an individual, from which the streams of its operators are derived
+	public long seed(int generation, int individual) {
+		return mix(mix(masterSeed + GOLDEN_GAMMA * (generation + 1L)) + GOLDEN_GAMMA * (individual + 1L));
+	}
+
+	public SplittableRandom stream(int generation, int individual, Operator operator) {
+		return stream(seed(generation, individual), operator);
+	}
+
+	// Stream of an operator for the individual with the given seed
+	public static SplittableRandom stream(long seed, Operator operator) {
+		return new SplittableRandom(mix(seed + GOLDEN_GAMMA * (operator.ordinal() + 1L)));
+	}
+
+	// The finalizer of SplitMix64, which spreads seeds that differ by a few bits
+	// over the whole range
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
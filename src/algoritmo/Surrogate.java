@@ -0,0 +1,153 @@
+package algoritmo;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import utils.GameController;
+import utils.LockstepBoard;
+
+/**
+ * Predicts the fitness of a network before it is simulated, so that
+ * GeneticAlgorithm can breed more children than it evaluates and only keep the
+ * promising ones. A network is described by its behaviour: the moves it
+ * chooses for a fixed set of probe states, taken from games of a good network.
+ * Its predicted fitness is the mean fitness of the k evaluated networks whose
+ * moves differ from its own on the fewest probe states.
+ */
+public class Surrogate {
+
+	private final int[] probeStates;
+	private final int stateSize;
+	private final int probes;
+	private final int neighbours;
+	// The last evaluated networks, overwritten oldest first once full
+	private final byte[][] descriptors;
+	private final double[] fitness;
+	private int size;
+	private int next;
+
+	/**
+	 * @param probeStates the probe states, stateSize values each, see
+	 *                    collectProbeStates
+	 * @param capacity    number of evaluated networks remembered
+	 * @param neighbours  number of networks a prediction is the mean of
+	 */
+	public Surrogate(int[] probeStates, int stateSize, int capacity, int neighbours) {
+		if (probeStates.length == 0 || probeStates.length % stateSize != 0) {
+			throw new IllegalArgumentException("Expected a whole number of probe states");
+		}
+		this.probeStates = probeStates;
+		this.stateSize = stateSize;
+		this.probes = probeStates.length / stateSize;
+		this.neighbours = neighbours;
+		descriptors = new byte[capacity][];
+		fitness = new double[capacity];
+	}
+
+	/**
+	 * Plays games with the given controller and keeps one state every interval
+	 * ticks, until count states are kept. A new game is started on the board of
+	 * the next seed whenever one ends, up to maxGames games, so fewer states are
+	 * returned if the controller keeps losing quickly.
+	 *
+	 * @param boards creates the board of a seed, driven through LockstepBoard
+	 */
+	public static int[] collectProbeStates(IntFunction<LockstepBoard> boards, GameController controller,
+			int count, int interval, int maxGames) {
+		int[] states = null;
+		int[] state = null;
+		int collected = 0;
+		for (int game = 0; game < maxGames && collected < count; game++) {
+			LockstepBoard board = boards.apply(game + 1);
+			int size = board.getStateSize();
+			if (states == null) {
+				states = new int[count * size];
+				state = new int[size];
+			}
+			board.startEpisode();
+			for (int tick = 0; board.isInGame() && collected < count; tick++) {
+				board.writeState(state, 0);
+				if (tick % interval == 0)
+					System.arraycopy(state, 0, states, size * collected++, size);
+				board.advance(controller.nextMove(state));
+			}
+		}
+		return states == null ? new int[0] : Arrays.copyOf(states, collected * state.length);
+	}
+
+	/**
+	 * The moves of the network for every probe state. It uses the buffers of the
+	 * network, so a network must not be described by two threads at once.
+	 */
+	public byte[] describe(FeedforwardNeuralNetwork network) {
+		int[] moves = new int[probes];
+		network.nextMoves(probeStates, stateSize, probes, moves);
+		byte[] descriptor = new byte[probes];
+		for (int i = 0; i < probes; i++)
+			descriptor[i] = (byte) moves[i];
+		return descriptor;
+	}
+
+	/** Remembers the fitness of an evaluated network. Not thread safe */
+	public void add(byte[] descriptor, double fitness) {
+		descriptors[next] = descriptor;
+		this.fitness[next] = fitness;
+		next = (next + 1) % descriptors.length;
+		size = Math.min(size + 1, descriptors.length);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of probe states on which the network's moves differ from those of
+	 * the most similar evaluated network. Used to prefer unseen behaviours
+	 * between children with the same prediction.
+	 */
+	public int novelty(byte[] descriptor) {
+		int nearest = descriptor.length;
+		for (int i = 0; i < size && nearest > 0; i++)
+			nearest = distance(descriptor, descriptors[i], nearest);
+		return nearest;
+	}
+
+	/**
+	 * Mean fitness of the nearest evaluated networks, NaN if none was added.
+	 * Can be called from several threads as long as no network is being added.
+	 */
+	public double predict(byte[] descriptor) {
+		int k = Math.min(neighbours, size);
+		if (k == 0)
+			return Double.NaN;
+		// The k nearest so far, sorted by distance
+		int[] nearestDistance = new int[k];
+		double[] nearestFitness = new double[k];
+		Arrays.fill(nearestDistance, Integer.MAX_VALUE);
+		for (int i = 0; i < size; i++) {
+			int distance = distance(descriptor, descriptors[i], nearestDistance[k - 1]);
+			if (distance >= nearestDistance[k - 1])
+				continue;
+			int slot = k - 1;
+			for (; slot > 0 && nearestDistance[slot - 1] > distance; slot--) {
+				nearestDistance[slot] = nearestDistance[slot - 1];
+				nearestFitness[slot] = nearestFitness[slot - 1];
+			}
+			nearestDistance[slot] = distance;
+			nearestFitness[slot] = fitness[i];
+		}
+		double sum = 0;
+		for (double value : nearestFitness)
+			sum += value;
+		return sum / k;
+	}
+
+	// Number of probe states on which the moves differ, counting stops at limit
+	private static int distance(byte[] a, byte[] b, int limit) {
+		int distance = 0;
+		for (int i = 0; i < a.length && distance < limit; i++)
+			if (a[i] != b[i])
+				distance++;
+		return distance;
+	}
+}
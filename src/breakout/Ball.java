@@ -1,7 +1,5 @@
 package breakout;
 
-import javax.swing.ImageIcon;
-
 import utils.Commons;
 
 public class Ball extends Sprite {
@@ -10,6 +8,7 @@ public class Ball extends Sprite {
     private int ydir;
 
     public Ball() {
+        super(Commons.BALL_SIZE, Commons.BALL_SIZE);
         initBall();
     }
 
@@ -17,28 +16,14 @@ public class Ball extends Sprite {
         xdir = 1;
         ydir = -1;
 
-        loadImage();
-        getImageDimensions();
         resetState();
     }
 
-    private void loadImage() {
-        var ii = new ImageIcon("src/resources/ball.png");
-        image = ii.getImage();
-    }
-
     void move() {
         x += xdir;// + Math.random()*4 - 2;
         y += ydir;
-        if (x == 0) {
-            setXDir(1);
-        }
-        if (x >= Commons.WIDTH - imageWidth) {
-            setXDir(-1);
-        }
-        if (y <= 0) {
-            setYDir(1);
-        }
+        xdir = BreakoutRules.ballXDir(x, xdir);
+        ydir = BreakoutRules.ballYDir(y, ydir);
     }
 
     private void resetState() {
@@ -54,6 +39,10 @@ public class Ball extends Sprite {
         ydir = y;
     }
 
+    int getXDir() {
+        return xdir;
+    }
+
     int getYDir() {
         return ydir;
     }
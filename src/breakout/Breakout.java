@@ -1,11 +1,12 @@
 package breakout;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 
 import algoritmo.FeedforwardNeuralNetwork;
 import algoritmo.GeneticAlgorithm;
+import utils.ActionLog;
 import utils.Commons;
 import utils.GameController;
 
@@ -14,7 +15,17 @@ public class Breakout extends JFrame {
 	private static final long serialVersionUID = 1L;
 
 	public Breakout(GameController network, int seed) {
-		add(new BreakoutBoard(network, true, seed));
+		this(network, seed, BreakoutBoard.REAL_TIME);
+	}
+
+	/**
+	 * @param speed ticks simulated per second, from BreakoutBoard.REAL_TIME to
+	 *              BreakoutBoard.MAX_SPEED
+	 */
+	public Breakout(GameController network, int seed, double speed) {
+		BreakoutBoard board = new BreakoutBoard(network, true, seed);
+		board.setSpeed(speed);
+		add(board);
 		setTitle("Breakout");
 
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -24,7 +35,20 @@ public class Breakout extends JFrame {
 		setVisible(true);
 	}
 
-	public static void main(String[] args) throws FileNotFoundException {
+	/**
+	 * Shows the best individual of breakout.txt. If the path of an action log is
+	 * given, that episode is replayed instead, optionally followed by the speed in
+	 * ticks per second or "max"
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0) {
+			ActionLog log = ActionLog.read(args[0]);
+			double speed = BreakoutBoard.REAL_TIME;
+			if (args.length > 1)
+				speed = args[1].equals("max") ? BreakoutBoard.MAX_SPEED : Double.parseDouble(args[1]);
+			new Breakout(log.replay(), log.getSeed(), speed);
+			return;
+		}
 		FeedforwardNeuralNetwork bestNetwork = GeneticAlgorithm.readFile("breakout.txt", 1)[0];
 		new Breakout(bestNetwork, Commons.SEED);
 	}
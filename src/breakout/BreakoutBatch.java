@@ -0,0 +1,213 @@
+package breakout;
+
+import utils.BatchGameController;
+import utils.Commons;
+import utils.GameController;
+import utils.StatefulRandom;
+
+/**
+ * Simulates many headless Breakout games in lockstep. Every game is stored as a
+ * column of parallel int arrays and each tick is a single loop over the games
+ * that are still alive, with one call to a batched policy per tick. The rules
+ * are those of BreakoutRules, which BreakoutEngine plays with a single brick
+ * too, so every game ends with the fitness a separate BreakoutEngine would
+ * report for the same controller and seed.
+ */
+public class BreakoutBatch {
+
+	private final BatchGameController policy;
+	private final int size;
+
+	private final int[] ballX, ballY, ballDx, ballDy;
+	private final int[] paddleX, paddleDx;
+	private final int[] brickX, brickY;
+	private final int[] time, kills;
+	private final StatefulRandom[] random;
+	private final boolean[] alive;
+
+	// Indices of the games still running, in ascending order
+	private final int[] live;
+	private int liveCount;
+
+	private final int[] states;
+	private final int[] moves;
+
+	private final boolean cycleDetection;
+	private final VisitedStates[] visited;
+
+	/**
+	 * Creates one game per seed, all driven by the same batched policy
+	 * 
+	 * @param policy policy that receives the states of every live game per tick
+	 * @param seeds  the initial seed of each game
+	 */
+	public BreakoutBatch(BatchGameController policy, int[] seeds) {
+		this.policy = policy;
+		this.size = seeds.length;
+		ballX = new int[size];
+		ballY = new int[size];
+		ballDx = new int[size];
+		ballDy = new int[size];
+		paddleX = new int[size];
+		paddleDx = new int[size];
+		brickX = new int[size];
+		brickY = new int[size];
+		time = new int[size];
+		kills = new int[size];
+		random = new StatefulRandom[size];
+		alive = new boolean[size];
+		live = new int[size];
+		states = new int[size * Commons.BREAKOUT_STATE_SIZE];
+		moves = new int[size];
+		cycleDetection = Commons.BREAKOUT_CYCLE_DETECTION;
+		visited = cycleDetection ? new VisitedStates[size] : null;
+
+		for (int g = 0; g < size; g++) {
+			ballX[g] = Commons.INIT_BALL_X;
+			ballY[g] = Commons.INIT_BALL_Y;
+			ballDx[g] = 1;
+			ballDy[g] = -1;
+			paddleX[g] = Commons.INIT_PADDLE_X;
+			random[g] = new StatefulRandom(seeds[g]);
+			brickX[g] = BreakoutRules.newBrickX(random[g]);
+			brickY[g] = BreakoutRules.newBrickY(random[g]);
+			alive[g] = true;
+			live[g] = g;
+			if (cycleDetection) {
+				visited[g] = new VisitedStates();
+				skipCycle(g);
+			}
+		}
+		liveCount = size;
+	}
+
+	// Creates count games with the same seed
+	public BreakoutBatch(BatchGameController policy, int count, int seed) {
+		this(policy, sameSeed(seed, count));
+	}
+
+	/**
+	 * Creates one game per controller, all with the same seed. Controller i
+	 * plays game i
+	 */
+	public BreakoutBatch(GameController[] controllers, int seed) {
+		this(perGame(controllers), controllers.length, seed);
+	}
+
+	public void runSimulation() {
+		while (liveCount > 0)
+			step();
+	}
+
+	public double getFitness(int game) {
+		return BreakoutRules.fitness(kills[game], time[game]);
+	}
+
+	public int getTime(int game) {
+		return time[game];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void step() {
+		int stateSize = Commons.BREAKOUT_STATE_SIZE;
+		for (int k = 0; k < liveCount; k++) {
+			int g = live[k];
+			int base = k * stateSize;
+			states[base] = ballX[g];
+			states[base + 1] = ballY[g];
+			states[base + 2] = ballDy[g];
+			states[base + 3] = paddleX[g];
+			states[base + 4] = Commons.INIT_PADDLE_Y;
+			states[base + 5] = brickX[g];
+			states[base + 6] = brickY[g];
+		}
+		policy.nextMoves(states, live, liveCount, moves);
+
+		int remaining = 0;
+		for (int k = 0; k < liveCount; k++) {
+			int g = live[k];
+			paddleDx[g] = BreakoutRules.paddleDx(moves[k], paddleDx[g]);
+			moveBall(g);
+			paddleX[g] = BreakoutRules.paddleX(paddleX[g] + paddleDx[g]);
+			checkCollision(g);
+			time[g]++;
+			if (alive[g] && cycleDetection)
+				skipCycle(g);
+			if (alive[g] && time[g] <= Commons.BREAKOUT_MAX_TIME)
+				live[remaining++] = g;
+		}
+		liveCount = remaining;
+	}
+
+	private void moveBall(int g) {
+		ballX[g] += ballDx[g];
+		ballY[g] += ballDy[g];
+		ballDx[g] = BreakoutRules.ballXDir(ballX[g], ballDx[g]);
+		ballDy[g] = BreakoutRules.ballYDir(ballY[g], ballDy[g]);
+	}
+
+	// Same checks as BreakoutEngine.checkCollision(), with the sprites unpacked
+	// into arrays
+	private void checkCollision(int g) {
+		int x = ballX[g];
+		int y = ballY[g];
+
+		if (y + Commons.BALL_SIZE > Commons.BOTTOM_EDGE)
+			alive[g] = false;
+
+		if (BreakoutRules.hitsPaddle(x, y, paddleX[g])) {
+			int yDir = ballDy[g];
+			ballDx[g] = BreakoutRules.paddleXDir(x, paddleX[g], ballDx[g]);
+			ballDy[g] = BreakoutRules.paddleYDir(x, paddleX[g], yDir);
+		}
+
+		int bx = brickX[g];
+		int by = brickY[g];
+		if (BreakoutRules.hitsBrick(x, y, bx, by, Commons.BRICK_WIDTH, Commons.BRICK_HEIGHT)) {
+			ballDx[g] = BreakoutRules.brickXDir(x, y, bx, by, Commons.BRICK_WIDTH, Commons.BRICK_HEIGHT, ballDx[g]);
+			ballDy[g] = BreakoutRules.brickYDir(x, y, bx, by, Commons.BRICK_WIDTH, Commons.BRICK_HEIGHT, ballDy[g]);
+			brickX[g] = BreakoutRules.newBrickX(random[g]);
+			brickY[g] = BreakoutRules.newBrickY(random[g]);
+			kills[g]++;
+		}
+	}
+
+	// Same cycle skipping as BreakoutEngine: once game g repeats a state, jump
+	// over the whole cycles left and simulate the rest without detection
+	private void skipCycle(int g) {
+		VisitedStates seen = visited[g];
+		if (seen == null)
+			return;
+		int slot = seen.visit(BreakoutRules.packState(
+				BreakoutRules.packMotion(ballX[g], ballY[g], ballDx[g], ballDy[g], paddleX[g], paddleDx[g]), brickX[g],
+				brickY[g]), random[g].getState(), time[g], kills[g]);
+		if (slot >= 0) {
+			int period = time[g] - seen.timeAt(slot);
+			int cycles = (Commons.BREAKOUT_MAX_TIME + 1 - time[g]) / period;
+			kills[g] += cycles * (kills[g] - seen.killsAt(slot));
+			time[g] += cycles * period;
+			visited[g] = null;
+		}
+	}
+
+	// Adapts one controller per game to a batched policy
+	private static BatchGameController perGame(GameController[] controllers) {
+		int[] row = new int[Commons.BREAKOUT_STATE_SIZE];
+		return (states, games, count, moves) -> {
+			for (int k = 0; k < count; k++) {
+				System.arraycopy(states, k * row.length, row, 0, row.length);
+				moves[k] = controllers[games[k]].nextMove(row);
+			}
+		};
+	}
+
+	private static int[] sameSeed(int seed, int count) {
+		int[] seeds = new int[count];
+		for (int i = 0; i < count; i++)
+			seeds[i] = seed;
+		return seeds;
+	}
+}
@@ -6,121 +6,160 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Point;
+import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
 
+import javax.swing.ImageIcon;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
 import utils.*;
 
+/**
+ * Swing view of a BreakoutEngine. The engine is played on its own thread and
+ * the panel only draws the snapshots it publishes.
+ */
 public class BreakoutBoard extends JPanel implements Board {
 
-	public static final int LEFT = 1;
-	public static final int RIGHT = 2;
-
+	// Simulation speeds of the GUI, in ticks per second
+	public static final double REAL_TIME = 1000.0 / Commons.PERIOD;
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+	// Period of the renderer, about the refresh rate of a display
+	private static final int REFRESH_PERIOD = 16;
+	// How often the simulation thread publishes a frame when it never waits
+	private static final long PUBLISH_PERIOD = 1_000_000;
+	private static final int SNAPSHOT_SIZE = BreakoutEngine.SNAPSHOT_SIZE;
+
+	private final BreakoutEngine engine;
+	private final boolean withGui;
 	private Timer timer;
-	private String message = "Game Over";
-	private Ball ball;
-	private Paddle paddle;
-	private Brick[] bricks;
-	private boolean inGame = true;
-
-	private GameController controller;
-	private boolean withGui;
-	private Random r = new Random();
-	private int time;
-	private int kills;
+	private Image ballImage, paddleImage, brickImage;
+	private volatile double speed = REAL_TIME;
+	// Latest snapshot published by the simulation thread, the only state the GUI
+	// reads
+	private volatile int[] frame;
+	private BrickWall frameWall;
 
 	public BreakoutBoard() {
-		this.withGui = true;
-		initBoard();
+		this(null, true, 0);
 	}
 
 	/**
 	 * Creates a new BreakoutBoard with a controller. If the boolean parameter
-	 * withGui is set to false, indicating the absence of a graphical user
-	 * interface, the program operates in headless mode; otherwise, it initiates
-	 * with a graphical user interface.
+	 * withGui is set to false, the board is only a wrapper around its engine and
+	 * nothing is shown; otherwise, the game starts playing on screen.
 	 * 
 	 * @param controller controller used to get next action of the player
 	 * @param withGui    run with GUI
 	 * @param seed       the initial seed
 	 */
 	public BreakoutBoard(GameController controller, boolean withGui, int seed) {
-		this.controller = controller;
+		this(controller, withGui, seed,
+				Commons.BREAKOUT_WALL_MODE ? new BrickWall(Commons.WALL_COLUMNS, Commons.WALL_ROWS) : null);
+	}
+
+	/**
+	 * Creates a new BreakoutBoard that plays against a wall of bricks instead of
+	 * the single moving brick. Bricks are destroyed when hit and the game is won
+	 * once the wall is empty. A null wall plays the single moving brick.
+	 * 
+	 * @param controller controller used to get next action of the player
+	 * @param withGui    run with GUI
+	 * @param seed       the initial seed
+	 * @param wall       the wall of bricks
+	 */
+	public BreakoutBoard(GameController controller, boolean withGui, int seed, BrickWall wall) {
+		this.engine = new BreakoutEngine(controller, seed, wall);
 		this.withGui = withGui;
-		r.setSeed(seed);
 
 		initBoard();
 	}
 
 	private void initBoard() {
-		if (withGui) {
-			setFocusable(true);
-			setPreferredSize(new Dimension(Commons.WIDTH, Commons.HEIGHT));
-		}
-		gameInit();
+		if (!withGui)
+			return;
+		setFocusable(true);
+		setPreferredSize(new Dimension(Commons.WIDTH, Commons.HEIGHT));
+		loadImages();
+
+		frame = engine.snapshot();
+		if (engine.getWall() != null)
+			frameWall = engine.getWall().copyLayout();
+		timer = new Timer(REFRESH_PERIOD, new GameCycle());
+		timer.start();
+		Thread simulation = new Thread(this::simulate, "Breakout simulation");
+		simulation.setDaemon(true);
+		simulation.start();
 	}
 
-	public void makeMove(int move) {
-		paddle.makeMove(move);
+	private void loadImages() {
+		ballImage = new ImageIcon("src/resources/ball.png").getImage();
+		paddleImage = new ImageIcon("src/resources/paddle.png").getImage();
+		brickImage = new ImageIcon("src/resources/brick.png").getImage();
 	}
 
-	private void gameInit() {
+	public BreakoutEngine getEngine() {
+		return engine;
+	}
 
-		bricks = new Brick[Commons.N_OF_BRICKS];
+	public void makeMove(int move) {
+		engine.makeMove(move);
+	}
 
-		ball = new Ball();
-		paddle = new Paddle();
+	public void runSimulation() {
+		engine.runSimulation();
+	}
 
-		bricks[0] = new Brick(r.nextInt(6) * 40 + 30, r.nextInt(5) * 10 + 50);
+	public void resumeSimulation() {
+		engine.resumeSimulation();
+	}
 
-		if (withGui) {
-			timer = new Timer(Commons.PERIOD, new GameCycle());
-			timer.start();
-		}
+	public void cancel() {
+		engine.cancel();
 	}
 
-	public void runSimulation() {
-		while (inGame) {
-			int move = controller.nextMove(getState());
-			makeMove(move);
-			ball.move();
-			paddle.move();
-			checkCollision();
-			time++;
-			if (time > 100000)
-				break;
-		}
+	public boolean isTruncated() {
+		return engine.isTruncated();
+	}
+
+	public void setCycleDetection(boolean cycleDetection) {
+		engine.setCycleDetection(cycleDetection);
 	}
 
 	public void setSeed(int seed) {
-		r.setSeed(seed);
+		engine.setSeed(seed);
 	}
 
 	public double getFitness() {
-		return kills * 100000 + 100000 - time;
+		return engine.getFitness();
+	}
+
+	public int[] snapshot() {
+		return engine.snapshot();
 	}
 
-	private int[] getState() {
-		int[] state = new int[Commons.BREAKOUT_STATE_SIZE];
+	public void restore(int[] snapshot) {
+		engine.restore(snapshot);
+	}
 
-		state[0] = ball.getX();
-		state[1] = ball.getY();
-		state[2] = ball.getYDir();
+	public BreakoutEngine fork() {
+		return engine.fork();
+	}
 
-		state[3] = paddle.getX();
-		state[4] = paddle.getY();
+	public int getTime() {
+		return engine.getTime();
+	}
 
-		state[5] = bricks[0].getX();
-		state[6] = bricks[0].getY();
+	public int getTicks() {
+		return engine.getTicks();
+	}
 
-		return state;
+	public int getKills() {
+		return engine.getKills();
 	}
 
 	@Override
@@ -129,34 +168,58 @@ public class BreakoutBoard extends JPanel implements Board {
 		var g2d = (Graphics2D) g;
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-		if (inGame) {
-			drawObjects(g2d);
+		int[] current = frame;
+		if (current[8] != 0) {
+			drawObjects(g2d, current);
 		} else {
-			gameFinished(g2d);
+			gameFinished(g2d, current);
 		}
 		Toolkit.getDefaultToolkit().sync();
 	}
 
-	private void drawObjects(Graphics2D g2d) {
-		g2d.drawImage(ball.getImage(), ball.getX(), ball.getY(), ball.getImageWidth(), ball.getImageHeight(), this);
-		g2d.drawImage(paddle.getImage(), paddle.getX(), paddle.getY(), paddle.getImageWidth(), paddle.getImageHeight(),
+	private void drawObjects(Graphics2D g2d, int[] frame) {
+		g2d.drawImage(ballImage, frame[0], frame[1], Commons.BALL_SIZE, Commons.BALL_SIZE, this);
+		g2d.drawImage(paddleImage, frame[4], Commons.INIT_PADDLE_Y, Commons.PADDLE_WIDTH, Commons.PADDLE_HEIGHT,
 				this);
-		for (int i = 0; i < Commons.N_OF_BRICKS; i++) {
-			if (!bricks[i].isDestroyed()) {
-				g2d.drawImage(bricks[i].getImage(), bricks[i].getX(), bricks[i].getY(), bricks[i].getImageWidth(),
-						bricks[i].getImageHeight(), this);
+		if (frameWall != null) {
+			frameWall.read(frame, SNAPSHOT_SIZE);
+			drawWall(g2d);
+		} else {
+			g2d.drawImage(brickImage, frame[6], frame[7], Commons.BRICK_WIDTH, Commons.BRICK_HEIGHT, this);
+		}
+		drawScore(g2d, frame);
+	}
+
+	private void drawScore(Graphics2D g2d, int[] frame) {
+		double fitness = frame[10] * 100000 + 100000 - frame[9];
+		g2d.drawString("Score: " + fitness + "; Kills: " + frame[10], 10, 10);
+	}
+
+	private void drawWall(Graphics2D g2d) {
+		for (int row = 0; row < frameWall.getRows(); row++) {
+			for (int column = 0; column < frameWall.getColumns(); column++) {
+				if (frameWall.isAlive(column, row)) {
+					g2d.drawImage(brickImage, frameWall.brickX(column), frameWall.brickY(row),
+							frameWall.getBrickWidth(), frameWall.getBrickHeight(), this);
+				}
 			}
 		}
-		g2d.drawString("Score: " + getFitness() + "; Kills: " + kills, 10, 10);
 	}
 
-	private void gameFinished(Graphics2D g2d) {
+	private void gameFinished(Graphics2D g2d, int[] frame) {
 
 		var font = new Font("Verdana", Font.BOLD, 18);
 		FontMetrics fontMetrics = this.getFontMetrics(font);
+		// Only an emptied wall ends the game before the ball is lost
+		String message = "Game Over";
+		if (frameWall != null) {
+			frameWall.read(frame, SNAPSHOT_SIZE);
+			if (frameWall.getRemaining() == 0)
+				message = "Victory";
+		}
 
 		g2d.setColor(Color.BLACK);
-		g2d.drawString("Score: " + getFitness() + "; Kills: " + kills, 10, 10);
+		drawScore(g2d, frame);
 		g2d.setFont(font);
 		g2d.drawString(message, (Commons.WIDTH - fontMetrics.stringWidth(message)) / 2, Commons.WIDTH / 2);
 	}
@@ -164,101 +227,55 @@ public class BreakoutBoard extends JPanel implements Board {
 	private class GameCycle implements ActionListener {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			doGameCycle();
+			repaint();
+			if (frame[8] == 0)
+				timer.stop();
 		}
 	}
 
-	private void doGameCycle() {
-		paddle.makeMove(controller.nextMove(getState()));
-		ball.move();
-		paddle.move();
-		checkCollision();
-		time++;
-		repaint();
-	}
-
-	private void stopGame() {
-		inGame = false;
-		if (withGui) {
-			timer.stop();
+	/**
+	 * Sets how many ticks per second the GUI simulates: REAL_TIME plays at the
+	 * original speed and MAX_SPEED as fast as the controller allows. The
+	 * renderer only shows the latest state, so any ticks in between are skipped
+	 * on screen.
+	 */
+	public void setSpeed(double ticksPerSecond) {
+		if (!(ticksPerSecond > 0)) {
+			throw new IllegalArgumentException("Invalid speed");
 		}
+		speed = ticksPerSecond;
 	}
 
-	private void moveBrick() {
-		bricks[0].setX(r.nextInt(6) * 40 + 30);
-		bricks[0].setY(r.nextInt(5) * 10 + 50);
-	}
-
-	private void checkCollision() {
-		if (ball.getRect().getMaxY() > Commons.BOTTOM_EDGE) {
-			stopGame();
-		}
-
-		if ((ball.getRect()).intersects(paddle.getRect())) {
-
-			int paddleLPos = (int) paddle.getRect().getMinX();
-			int ballLPos = (int) ball.getRect().getMinX();
-
-			int first = paddleLPos + 8;
-			int second = paddleLPos + 16;
-			int third = paddleLPos + 24;
-			int fourth = paddleLPos + 32;
-
-			if (ballLPos < first) {
-				ball.setXDir(-1);
-				ball.setYDir(-1);
-			}
-
-			if (ballLPos >= first && ballLPos < second) {
-				ball.setXDir(-1);
-				ball.setYDir(-1 * ball.getYDir());
-			}
-
-			if (ballLPos >= second && ballLPos < third) {
-				ball.setXDir(0);
-				ball.setYDir(-1);
-			}
-
-			if (ballLPos >= third && ballLPos < fourth) {
-				ball.setXDir(1);
-				ball.setYDir(-1 * ball.getYDir());
+	// Runs the game of the GUI on its own thread. A snapshot is published for the
+	// renderer whenever the simulation waits for the clock, and about once per
+	// millisecond when it never has to wait
+	private void simulate() {
+		double pace = speed;
+		long start = System.nanoTime();
+		int startTime = engine.getTime();
+		long published = start;
+		while (engine.isInGame()) {
+			if (speed != pace) {
+				pace = speed;
+				start = System.nanoTime();
+				startTime = engine.getTime();
 			}
-
-			if (ballLPos > fourth) {
-				ball.setXDir(1);
-				ball.setYDir(-1);
+			long now = System.nanoTime();
+			long due = start + (long) ((engine.getTime() - startTime) * 1e9 / pace);
+			if (due > now) {
+				frame = engine.snapshot();
+				published = now;
+				LockSupport.parkNanos(due - now);
+				continue;
 			}
-		}
-
-		for (int i = 0; i < Commons.N_OF_BRICKS; i++) {
-
-			if ((ball.getRect()).intersects(bricks[i].getRect())) {
-				int ballLeft = (int) ball.getRect().getMinX();
-				int ballHeight = (int) ball.getRect().getHeight();
-				int ballWidth = (int) ball.getRect().getWidth();
-				int ballTop = (int) ball.getRect().getMinY();
-
-				var pointRight = new Point(ballLeft + ballWidth + 1, ballTop);
-				var pointLeft = new Point(ballLeft - 1, ballTop);
-				var pointTop = new Point(ballLeft, ballTop - 1);
-				var pointBottom = new Point(ballLeft, ballTop + ballHeight + 1);
-
-				if (bricks[i].getRect().contains(pointRight)) {
-					ball.setXDir(-1);
-				} else if (bricks[i].getRect().contains(pointLeft)) {
-					ball.setXDir(1);
-				}
-
-				if (bricks[i].getRect().contains(pointTop)) {
-
-					ball.setYDir(1);
-				} else if (bricks[i].getRect().contains(pointBottom)) {
-
-					ball.setYDir(-1);
-				}
-				moveBrick();
-				kills++;
+			engine.step();
+			if (now - published > PUBLISH_PERIOD) {
+				frame = engine.snapshot();
+				published = now;
 			}
 		}
+		// The renderer stops its own timer once it has shown the end
+		engine.stopGame();
+		frame = engine.snapshot();
 	}
 }
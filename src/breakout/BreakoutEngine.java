@@ -0,0 +1,364 @@
+package breakout;
+
+import utils.*;
+
+/**
+ * The rules of Breakout without any Swing or AWT class, so that games can be
+ * simulated on a headless JVM. BreakoutBoard draws the snapshots of an engine
+ * and is only needed to watch a game.
+ */
+public class BreakoutEngine implements LockstepBoard, BudgetedBoard {
+
+	public static final int LEFT = 1;
+	public static final int RIGHT = 2;
+
+	private Ball ball;
+	private Paddle paddle;
+	private Brick[] bricks;
+	private final BrickWall wall;
+	private boolean inGame = true;
+
+	private final GameController controller;
+	private StatefulRandom r = new StatefulRandom();
+	private int time;
+	private int kills;
+	private boolean cycleDetection = Commons.BREAKOUT_CYCLE_DETECTION;
+	private volatile boolean cancelled;
+	// Whether resumeSimulation() is running, guarded by the engine's lock so that
+	// a late cancel() can't stop the next one
+	private boolean running;
+	private boolean truncated;
+	private int tickBudget = Integer.MAX_VALUE;
+	// The state given to the controller, rewritten every tick
+	private final int[] state = new int[Commons.BREAKOUT_STATE_SIZE];
+
+	/**
+	 * @param controller controller used to get next action of the player
+	 * @param seed       the initial seed
+	 */
+	public BreakoutEngine(GameController controller, int seed) {
+		this(controller, seed,
+				Commons.BREAKOUT_WALL_MODE ? new BrickWall(Commons.WALL_COLUMNS, Commons.WALL_ROWS) : null);
+	}
+
+	/**
+	 * Plays against a wall of bricks instead of the single moving brick. Bricks
+	 * are destroyed when hit and the game is won once the wall is empty. A null
+	 * wall plays the single moving brick.
+	 *
+	 * @param controller controller used to get next action of the player
+	 * @param seed       the initial seed
+	 * @param wall       the wall of bricks
+	 */
+	public BreakoutEngine(GameController controller, int seed, BrickWall wall) {
+		if (wall != null && (long) wall.getColumns() * wall.getRows() > REMAINING_MASK) {
+			throw new IllegalArgumentException("A wall can't have more than " + REMAINING_MASK + " bricks");
+		}
+		this.controller = controller;
+		this.wall = wall;
+		r.setSeed(seed);
+
+		gameInit();
+	}
+
+	public void makeMove(int move) {
+		paddle.makeMove(move);
+	}
+
+	private void gameInit() {
+
+		bricks = new Brick[Commons.N_OF_BRICKS];
+
+		ball = new Ball();
+		paddle = new Paddle();
+
+		if (wall == null)
+			bricks[0] = new Brick(BreakoutRules.newBrickX(r), BreakoutRules.newBrickY(r));
+	}
+
+	public void runSimulation() {
+		resumeSimulation();
+	}
+
+	public void resumeSimulation() {
+		synchronized (this) {
+			running = true;
+		}
+		if (cycleDetection)
+			skipCycle();
+		while (isInGame() && time < tickBudget && !cancelled)
+			step();
+		truncated = cancelled || isInGame();
+		synchronized (this) {
+			running = false;
+			cancelled = false;
+		}
+	}
+
+	public synchronized void cancel() {
+		if (running)
+			cancelled = true;
+	}
+
+	public void setTickBudget(int maxTicks) {
+		tickBudget = maxTicks;
+	}
+
+	// Breakout episodes always end at the time limit, so they are only truncated
+	// when cancelled or stopped by the tick budget
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	// One tick of the game. Package-private so that BreakoutBoard can pace the
+	// ticks and a single tick can be benchmarked
+	void step() {
+		// Its state isn't tracked for changes, which are never known
+		advance(controller.nextMove(getState(), null, -1));
+	}
+
+	// The game starts when the engine is created
+	public void startEpisode() {
+		truncated = false;
+	}
+
+	public void advance(int move) {
+		makeMove(move);
+		ball.move();
+		paddle.move();
+		checkCollision();
+		time++;
+	}
+
+	/**
+	 * Enables or disables cycle detection. When enabled, the simulation stops as
+	 * soon as a game state repeats and jumps over all the remaining whole cycles,
+	 * adding their kills and time analytically. The result is only the same as
+	 * an exact run if the controller is deterministic.
+	 */
+	public void setCycleDetection(boolean cycleDetection) {
+		this.cycleDetection = cycleDetection;
+	}
+
+	// Simulates until the first repeated state (or the end of the episode) and
+	// fast-forwards over every whole cycle left before the time limit or the tick
+	// budget. The caller simulates the remaining partial cycle
+	private void skipCycle() {
+		VisitedStates visited = new VisitedStates();
+		int limit = Math.min(Commons.BREAKOUT_MAX_TIME + 1, tickBudget);
+		while (inGame && time < limit && !cancelled) {
+			int slot = visited.visit(packState(), r.getState(), time, kills);
+			if (slot >= 0) {
+				int period = time - visited.timeAt(slot);
+				int killsPerCycle = kills - visited.killsAt(slot);
+				int cycles = (limit - time) / period;
+				time += cycles * period;
+				kills += cycles * killsPerCycle;
+				return;
+			}
+			step();
+		}
+	}
+
+	// Bits of packState() left for the number of remaining bricks of a wall
+	static final int REMAINING_BITS = 28;
+	static final long REMAINING_MASK = (1L << REMAINING_BITS) - 1;
+
+	// Packs everything the next ticks depend on, except the RNG, into one long.
+	// Coordinates use 10 bits each and directions 2 bits each. Bricks are never
+	// rebuilt, so the number of remaining bricks identifies the wall between two
+	// visits of the same state. In wall mode the 36 bits of the ball and paddle
+	// and the REMAINING_BITS of the wall fill the whole long
+	long packState() {
+		long key = BreakoutRules.packMotion(ball.getX(), ball.getY(), ball.getXDir(), ball.getYDir(), paddle.getX(),
+				paddle.getDx());
+		if (wall != null)
+			return key << REMAINING_BITS | wall.getRemaining();
+		return BreakoutRules.packState(key, bricks[0].getX(), bricks[0].getY());
+	}
+
+	public void setSeed(int seed) {
+		r.setSeed(seed);
+	}
+
+	public double getFitness() {
+		return BreakoutRules.fitness(kills, time);
+	}
+
+	// ball, paddle, brick, inGame, time, kills and the RNG, then the wall if any
+	static final int SNAPSHOT_SIZE = 13;
+
+	public int[] snapshot() {
+		int[] snapshot = new int[SNAPSHOT_SIZE + (wall == null ? 0 : wall.snapshotSize())];
+		snapshot[0] = ball.getX();
+		snapshot[1] = ball.getY();
+		snapshot[2] = ball.getXDir();
+		snapshot[3] = ball.getYDir();
+		snapshot[4] = paddle.getX();
+		snapshot[5] = paddle.getDx();
+		if (wall == null) {
+			snapshot[6] = bricks[0].getX();
+			snapshot[7] = bricks[0].getY();
+		}
+		snapshot[8] = inGame ? 1 : 0;
+		snapshot[9] = time;
+		snapshot[10] = kills;
+		long rngState = r.getState();
+		snapshot[11] = (int) (rngState >>> 32);
+		snapshot[12] = (int) rngState;
+		if (wall != null)
+			wall.write(snapshot, SNAPSHOT_SIZE);
+		return snapshot;
+	}
+
+	public void restore(int[] snapshot) {
+		if (snapshot.length != SNAPSHOT_SIZE + (wall == null ? 0 : wall.snapshotSize())) {
+			throw new IllegalArgumentException("Snapshot doesn't match this board");
+		}
+		ball.setX(snapshot[0]);
+		ball.setY(snapshot[1]);
+		ball.setXDir(snapshot[2]);
+		ball.setYDir(snapshot[3]);
+		paddle.setX(snapshot[4]);
+		paddle.setDx(snapshot[5]);
+		if (wall == null) {
+			bricks[0].setX(snapshot[6]);
+			bricks[0].setY(snapshot[7]);
+		}
+		inGame = snapshot[8] != 0;
+		time = snapshot[9];
+		kills = snapshot[10];
+		r.setState((long) snapshot[11] << 32 | (snapshot[12] & 0xFFFFFFFFL));
+		if (wall != null)
+			wall.read(snapshot, SNAPSHOT_SIZE);
+	}
+
+	public BreakoutEngine fork() {
+		BreakoutEngine copy = new BreakoutEngine(controller, 0, wall == null ? null : wall.copyLayout());
+		copy.cycleDetection = cycleDetection;
+		copy.restore(snapshot());
+		return copy;
+	}
+
+	public boolean isInGame() {
+		return inGame && time <= Commons.BREAKOUT_MAX_TIME;
+	}
+
+	// Ends the game at the time limit, so that the last snapshot shows the end
+	void stopGame() {
+		inGame = false;
+	}
+
+	// The wall played against, or null for the single moving brick
+	BrickWall getWall() {
+		return wall;
+	}
+
+	public int getTime() {
+		return time;
+	}
+
+	public int getTicks() {
+		return time;
+	}
+
+	public int getKills() {
+		return kills;
+	}
+
+	private int[] getState() {
+		writeState(state, 0);
+		return state;
+	}
+
+	public int getStateSize() {
+		return Commons.BREAKOUT_STATE_SIZE;
+	}
+
+	public void writeState(int[] state, int offset) {
+		state[offset] = ball.getX();
+		state[offset + 1] = ball.getY();
+		state[offset + 2] = ball.getYDir();
+
+		state[offset + 3] = paddle.getX();
+		state[offset + 4] = paddle.getY();
+
+		if (wall == null) {
+			state[offset + 5] = bricks[0].getX();
+			state[offset + 6] = bricks[0].getY();
+		} else {
+			// The wall is summarised by the lowest brick of the closest column, so the
+			// state has the same size whatever the number of bricks
+			int column = wall.targetColumn(ball.getX());
+			if (column >= 0) {
+				state[offset + 5] = wall.brickX(column);
+				state[offset + 6] = wall.brickY(wall.getLowestRow(column));
+			} else {
+				state[offset + 5] = 0;
+				state[offset + 6] = 0;
+			}
+		}
+	}
+
+	private void moveBrick() {
+		bricks[0].setX(BreakoutRules.newBrickX(r));
+		bricks[0].setY(BreakoutRules.newBrickY(r));
+	}
+
+	private void checkCollision() {
+		if (ball.getY() + ball.getHeight() > Commons.BOTTOM_EDGE) {
+			stopGame();
+		}
+
+		if (BreakoutRules.hitsPaddle(ball.getX(), ball.getY(), paddle.getX())) {
+			int yDir = ball.getYDir();
+			ball.setXDir(BreakoutRules.paddleXDir(ball.getX(), paddle.getX(), ball.getXDir()));
+			ball.setYDir(BreakoutRules.paddleYDir(ball.getX(), paddle.getX(), yDir));
+		}
+
+		if (wall != null) {
+			checkWallCollision();
+			return;
+		}
+
+		for (int i = 0; i < Commons.N_OF_BRICKS; i++) {
+
+			if (BreakoutRules.hitsBrick(ball.getX(), ball.getY(), bricks[i].getX(), bricks[i].getY(),
+					bricks[i].getWidth(), bricks[i].getHeight())) {
+				bounceOff(bricks[i].getX(), bricks[i].getY(), bricks[i].getWidth(), bricks[i].getHeight());
+				moveBrick();
+				kills++;
+			}
+		}
+	}
+
+	// Only the cells overlapped by the ball are checked. They are visited in the
+	// same row by row order as a scan over every brick of the wall
+	private void checkWallCollision() {
+		int ballLeft = ball.getX();
+		int ballTop = ball.getY();
+		int lastColumn = wall.lastColumn(ballLeft + ball.getWidth() - 1);
+		int lastRow = wall.lastRow(ballTop + ball.getHeight() - 1);
+
+		for (int row = wall.firstRow(ballTop); row <= lastRow; row++) {
+			for (int column = wall.firstColumn(ballLeft); column <= lastColumn; column++) {
+				if (wall.isAlive(column, row)) {
+					bounceOff(wall.brickX(column), wall.brickY(row), wall.getBrickWidth(), wall.getBrickHeight());
+					wall.destroy(column, row);
+					kills++;
+				}
+			}
+		}
+
+		if (wall.getRemaining() == 0) {
+			stopGame();
+		}
+	}
+
+	private void bounceOff(int brickX, int brickY, int brickWidth, int brickHeight) {
+		ball.setXDir(BreakoutRules.brickXDir(ball.getX(), ball.getY(), brickX, brickY, brickWidth, brickHeight,
+				ball.getXDir()));
+		ball.setYDir(BreakoutRules.brickYDir(ball.getX(), ball.getY(), brickX, brickY, brickWidth, brickHeight,
+				ball.getYDir()));
+	}
+}
@@ -0,0 +1,151 @@
+package breakout;
+
+import java.util.Random;
+
+import utils.Commons;
+
+/**
+ * The rules of a Breakout tick on plain coordinates, shared by the sprites of
+ * BreakoutEngine and the arrays of BreakoutBatch so that both play exactly the
+ * same game. Directions are -1, 0 or 1 and every method returns the new value
+ * of what it is given, which is the old one when the rule doesn't apply.
+ */
+final class BreakoutRules {
+
+	// Bits of packMotion(): three 10 bit coordinates and three 2 bit directions
+	static final int MOTION_BITS = 36;
+
+	private BreakoutRules() {
+	}
+
+	// Bounces the ball off the left and right edges after it moved to x
+	static int ballXDir(int x, int xDir) {
+		if (x == 0)
+			xDir = 1;
+		if (x >= Commons.WIDTH - Commons.BALL_SIZE)
+			xDir = -1;
+		return xDir;
+	}
+
+	// Bounces the ball off the top edge after it moved to y
+	static int ballYDir(int y, int yDir) {
+		return y <= 0 ? 1 : yDir;
+	}
+
+	// Keeps the paddle inside the screen
+	static int paddleX(int x) {
+		if (x <= 0)
+			x = 0;
+		if (x >= Commons.WIDTH - Commons.PADDLE_WIDTH)
+			x = Commons.WIDTH - Commons.PADDLE_WIDTH;
+		return x;
+	}
+
+	// The paddle's velocity after a move, which is kept when the move is neither
+	// LEFT nor RIGHT
+	static int paddleDx(int move, int dx) {
+		if (move == BreakoutEngine.LEFT)
+			return -1;
+		if (move == BreakoutEngine.RIGHT)
+			return 1;
+		return dx;
+	}
+
+	static boolean hitsPaddle(int ballX, int ballY, int paddleX) {
+		return intersects(ballX, ballY, Commons.BALL_SIZE, Commons.BALL_SIZE, paddleX, Commons.INIT_PADDLE_Y,
+				Commons.PADDLE_WIDTH, Commons.PADDLE_HEIGHT);
+	}
+
+	// The paddle is split in five segments of 8 pixels: the outer ones send the
+	// ball up and outwards, the middle one straight up and the others sideways,
+	// reversing its vertical direction. A ball exactly at the start of the last
+	// segment keeps its direction
+	static int paddleXDir(int ballX, int paddleX, int xDir) {
+		int offset = ballX - paddleX;
+		if (offset < 16)
+			return -1;
+		if (offset < 24)
+			return 0;
+		if (offset != 32)
+			return 1;
+		return xDir;
+	}
+
+	static int paddleYDir(int ballX, int paddleX, int yDir) {
+		int offset = ballX - paddleX;
+		if (offset < 8 || offset >= 16 && offset < 24 || offset > 32)
+			return -1;
+		if (offset != 32)
+			return -yDir;
+		return yDir;
+	}
+
+	static boolean hitsBrick(int ballX, int ballY, int brickX, int brickY, int brickWidth, int brickHeight) {
+		return intersects(ballX, ballY, Commons.BALL_SIZE, Commons.BALL_SIZE, brickX, brickY, brickWidth,
+				brickHeight);
+	}
+
+	// Bounces the ball sideways off a brick it hits on the left or right
+	static int brickXDir(int ballX, int ballY, int brickX, int brickY, int brickWidth, int brickHeight,
+			int xDir) {
+		if (contains(brickX, brickY, brickWidth, brickHeight, ballX + Commons.BALL_SIZE + 1, ballY))
+			return -1;
+		if (contains(brickX, brickY, brickWidth, brickHeight, ballX - 1, ballY))
+			return 1;
+		return xDir;
+	}
+
+	// Bounces the ball up or down off a brick it hits from below or above
+	static int brickYDir(int ballX, int ballY, int brickX, int brickY, int brickWidth, int brickHeight,
+			int yDir) {
+		if (contains(brickX, brickY, brickWidth, brickHeight, ballX, ballY - 1))
+			return 1;
+		if (contains(brickX, brickY, brickWidth, brickHeight, ballX, ballY + Commons.BALL_SIZE + 1))
+			return -1;
+		return yDir;
+	}
+
+	// Position the single brick moves to after every hit
+	static int newBrickX(Random random) {
+		return random.nextInt(6) * 40 + 30;
+	}
+
+	static int newBrickY(Random random) {
+		return random.nextInt(5) * 10 + 50;
+	}
+
+	static double fitness(int kills, int time) {
+		return kills * 100000 + 100000 - time;
+	}
+
+	/**
+	 * Packs the ball and the paddle into the low MOTION_BITS of a long, for the
+	 * keys of cycle detection. Coordinates use 10 bits each and directions 2
+	 * bits each
+	 */
+	static long packMotion(int ballX, int ballY, int ballXDir, int ballYDir, int paddleX, int paddleDx) {
+		long key = ballX;
+		key = key << 10 | ballY;
+		key = key << 2 | (ballXDir + 1);
+		key = key << 2 | (ballYDir + 1);
+		key = key << 10 | paddleX;
+		key = key << 2 | (paddleDx + 1);
+		return key;
+	}
+
+	// Key of a state with the single brick at brickX, brickY
+	static long packState(long motion, int brickX, int brickY) {
+		return (motion << 10 | brickX) << 10 | brickY;
+	}
+
+	// Same test as java.awt.Rectangle.intersects for rectangles of positive size
+	private static boolean intersects(int x1, int y1, int width1, int height1, int x2, int y2, int width2,
+			int height2) {
+		return x2 < x1 + width1 && x2 + width2 > x1 && y2 < y1 + height1 && y2 + height2 > y1;
+	}
+
+	// Whether a rectangle contains a point, as java.awt.Rectangle.contains
+	private static boolean contains(int x, int y, int width, int height, int px, int py) {
+		return px >= x && py >= y && px < x + width && py < y + height;
+	}
+}
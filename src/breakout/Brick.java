@@ -1,12 +1,13 @@
 package breakout;
 
-import javax.swing.ImageIcon;
+import utils.Commons;
 
 public class Brick extends Sprite {
 
     private boolean destroyed;
 
     public Brick(int x, int y) {
+        super(Commons.BRICK_WIDTH, Commons.BRICK_HEIGHT);
         initBrick(x, y);
     }
     
@@ -15,13 +16,6 @@ public class Brick extends Sprite {
         this.y = y;
         
         destroyed = false;
-        loadImage();
-        getImageDimensions();
-    }
-    
-    private void loadImage() {
-        var ii = new ImageIcon("src/resources/brick.png");
-        image = ii.getImage();        
     }
 
     boolean isDestroyed() {
@@ -0,0 +1,175 @@
+package breakout;
+
+import utils.Commons;
+
+/**
+ * A wall of bricks laid out on a uniform grid. Every brick fills one cell, so
+ * the bricks a rectangle can touch are found from its coordinates alone and a
+ * collision check only looks at the few cells the ball overlaps, whatever the
+ * size of the wall.
+ */
+public class BrickWall {
+
+	private final int x;
+	private final int y;
+	private final int columns;
+	private final int rows;
+	private final int brickWidth;
+	private final int brickHeight;
+	private final boolean[] alive;
+	// Lowest row with an alive brick in each column, or -1 if the column is empty
+	private final int[] lowestRow;
+	private int remaining;
+
+	/**
+	 * Splits the area of the original 6x5 wall (Commons.WALL_X, WALL_Y,
+	 * WALL_WIDTH and WALL_HEIGHT) into columns x rows bricks
+	 */
+	public BrickWall(int columns, int rows) {
+		this(Commons.WALL_X, Commons.WALL_Y, columns, rows, Commons.WALL_WIDTH / columns,
+				Commons.WALL_HEIGHT / rows);
+	}
+
+	public BrickWall(int x, int y, int columns, int rows, int brickWidth, int brickHeight) {
+		if (columns <= 0 || rows <= 0 || brickWidth <= 0 || brickHeight <= 0) {
+			throw new IllegalArgumentException("Invalid wall dimensions");
+		}
+		this.x = x;
+		this.y = y;
+		this.columns = columns;
+		this.rows = rows;
+		this.brickWidth = brickWidth;
+		this.brickHeight = brickHeight;
+		this.alive = new boolean[columns * rows];
+		this.lowestRow = new int[columns];
+		reset();
+	}
+
+	public void reset() {
+		for (int i = 0; i < alive.length; i++)
+			alive[i] = true;
+		for (int column = 0; column < columns; column++)
+			lowestRow[column] = rows - 1;
+		remaining = alive.length;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getBrickWidth() {
+		return brickWidth;
+	}
+
+	public int getBrickHeight() {
+		return brickHeight;
+	}
+
+	public int getRemaining() {
+		return remaining;
+	}
+
+	public int brickX(int column) {
+		return x + column * brickWidth;
+	}
+
+	public int brickY(int row) {
+		return y + row * brickHeight;
+	}
+
+	public boolean isAlive(int column, int row) {
+		return alive[row * columns + column];
+	}
+
+	// First and last column/row a span of pixels overlaps. They may fall outside
+	// the wall, in which case the range is clamped or empty
+	int firstColumn(int left) {
+		return Math.max(0, Math.floorDiv(left - x, brickWidth));
+	}
+
+	int lastColumn(int right) {
+		return Math.min(columns - 1, Math.floorDiv(right - x, brickWidth));
+	}
+
+	int firstRow(int top) {
+		return Math.max(0, Math.floorDiv(top - y, brickHeight));
+	}
+
+	int lastRow(int bottom) {
+		return Math.min(rows - 1, Math.floorDiv(bottom - y, brickHeight));
+	}
+
+	void destroy(int column, int row) {
+		alive[row * columns + column] = false;
+		remaining--;
+		if (lowestRow[column] == row) {
+			int r = row - 1;
+			while (r >= 0 && !alive[r * columns + column])
+				r--;
+			lowestRow[column] = r;
+		}
+	}
+
+	/**
+	 * Returns the column whose lowest alive brick is the closest, horizontally, to
+	 * the given x coordinate, or -1 if the wall is empty. Columns are searched
+	 * outwards from the one at x, so this is usually a single lookup
+	 */
+	public int targetColumn(int px) {
+		if (remaining == 0)
+			return -1;
+		int start = Math.min(columns - 1, Math.max(0, Math.floorDiv(px - x, brickWidth)));
+		for (int offset = 0; offset < columns; offset++) {
+			if (start - offset >= 0 && lowestRow[start - offset] >= 0)
+				return start - offset;
+			if (start + offset < columns && lowestRow[start + offset] >= 0)
+				return start + offset;
+		}
+		return -1;
+	}
+
+	public int getLowestRow(int column) {
+		return lowestRow[column];
+	}
+
+	// Number of ints write() uses: the remaining count and one bit per brick
+	int snapshotSize() {
+		return 1 + (alive.length + 31) / 32;
+	}
+
+	void write(int[] snapshot, int offset) {
+		snapshot[offset++] = remaining;
+		for (int i = 0; i < alive.length; i += 32) {
+			int word = 0;
+			for (int bit = 0; bit < 32 && i + bit < alive.length; bit++) {
+				if (alive[i + bit])
+					word |= 1 << bit;
+			}
+			snapshot[offset++] = word;
+		}
+	}
+
+	void read(int[] snapshot, int offset) {
+		remaining = snapshot[offset++];
+		for (int i = 0; i < alive.length; i += 32) {
+			int word = snapshot[offset++];
+			for (int bit = 0; bit < 32 && i + bit < alive.length; bit++)
+				alive[i + bit] = (word & (1 << bit)) != 0;
+		}
+		for (int column = 0; column < columns; column++) {
+			int row = rows - 1;
+			while (row >= 0 && !alive[row * columns + column])
+				row--;
+			lowestRow[column] = row;
+		}
+	}
+
+	// Returns a wall with the same layout and every brick alive
+	BrickWall copyLayout() {
+		return new BrickWall(x, y, columns, rows, brickWidth, brickHeight);
+	}
+}
@@ -1,7 +1,5 @@
 package breakout;
 
-import javax.swing.ImageIcon;
-
 import utils.Commons;
 
 public class Paddle extends Sprite  {
@@ -9,38 +7,25 @@ public class Paddle extends Sprite  {
 	private int dx;
 
     public Paddle() {
-        initPaddle();        
-    }
-    
-    private void initPaddle() {
-        loadImage();
-        getImageDimensions();
-
+        super(Commons.PADDLE_WIDTH, Commons.PADDLE_HEIGHT);
         resetState();
     }
-    
-    private void loadImage() {
-        var ii = new ImageIcon("src/resources/paddle.png");
-        image = ii.getImage();        
-    }    
 
     void move() {
-        x += dx;
-        if (x <= 0) {
-            x = 0;
-        }
-        if (x >= Commons.WIDTH - imageWidth) {
-            x = Commons.WIDTH - imageWidth;
-        }
+        x = BreakoutRules.paddleX(x + dx);
     }
 
 
+    int getDx() {
+        return dx;
+    }
+
+    void setDx(int dx) {
+        this.dx = dx;
+    }
+
     public void makeMove(int move) {
-    	if(move == BreakoutBoard.LEFT) {
-    		dx = -1;
-    	} else if(move == BreakoutBoard.RIGHT) {
-    		dx = 1;
-    	}
+    	dx = BreakoutRules.paddleDx(move, dx);
     }
     
     
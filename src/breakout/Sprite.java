@@ -1,16 +1,19 @@
 package breakout;
 
-import java.awt.Image;
-import java.awt.Rectangle;
-
+// Position and size of a game object, in pixels. The images are only known to
+// BreakoutBoard, so the game logic runs without the desktop modules
 public class Sprite {
 
     int x;
     int y;
-    int imageWidth;
-    int imageHeight;
-    Image image;
-    
+    int width;
+    int height;
+
+    Sprite(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
     protected void setX(int x) {
         this.x = x;
     }
@@ -27,25 +30,17 @@ public class Sprite {
         return y;
     }
 
-    int getImageWidth() {
-        return imageWidth;
-    }
-
-    int getImageHeight() {
-        return imageHeight;
-    }
-
-    Image getImage() {
-        return image;
+    int getWidth() {
+        return width;
     }
 
-    Rectangle getRect() {
-        return new Rectangle(x, y,
-                image.getWidth(null), image.getHeight(null));
+    int getHeight() {
+        return height;
     }
 
-    void getImageDimensions() {
-        imageWidth = image.getWidth(null);
-        imageHeight = image.getHeight(null);
+    // Same test as java.awt.Rectangle.intersects for sprites of positive size
+    boolean intersects(Sprite other) {
+        return other.x < x + width && other.x + other.width > x
+                && other.y < y + height && other.y + other.height > y;
     }
 }
@@ -0,0 +1,82 @@
+package breakout;
+
+/**
+ * Open addressing hash table from an exact game state (two longs) to the time
+ * and kill count at which it was first seen. Used by BreakoutEngine to find the
+ * first repeated state of a deterministic episode.
+ */
+class VisitedStates {
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private long[] rngStates = new long[INITIAL_CAPACITY];
+	private int[] times = new int[INITIAL_CAPACITY];
+	private int[] kills = new int[INITIAL_CAPACITY];
+	private boolean[] used = new boolean[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Looks the state up and stores it if it hasn't been seen yet
+	 * 
+	 * @return the slot of the earlier occurrence, or -1 if the state is new
+	 */
+	int visit(long key, long rngState, int time, int killCount) {
+		int slot = find(key, rngState);
+		if (used[slot])
+			return slot;
+		used[slot] = true;
+		keys[slot] = key;
+		rngStates[slot] = rngState;
+		times[slot] = time;
+		kills[slot] = killCount;
+		if (++size * 2 > keys.length)
+			grow();
+		return -1;
+	}
+
+	int timeAt(int slot) {
+		return times[slot];
+	}
+
+	int killsAt(int slot) {
+		return kills[slot];
+	}
+
+	private int find(long key, long rngState) {
+		int mask = keys.length - 1;
+		int slot = hash(key, rngState) & mask;
+		while (used[slot] && (keys[slot] != key || rngStates[slot] != rngState))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private static int hash(long key, long rngState) {
+		long h = key * 0x9E3779B97F4A7C15L ^ rngState * 0xC2B2AE3D27D4EB4FL;
+		return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldRngStates = rngStates;
+		int[] oldTimes = times;
+		int[] oldKills = kills;
+		boolean[] oldUsed = used;
+		int capacity = oldKeys.length * 2;
+		keys = new long[capacity];
+		rngStates = new long[capacity];
+		times = new int[capacity];
+		kills = new int[capacity];
+		used = new boolean[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = find(oldKeys[i], oldRngStates[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				rngStates[slot] = oldRngStates[i];
+				times[slot] = oldTimes[i];
+				kills[slot] = oldKills[i];
+			}
+		}
+	}
+}
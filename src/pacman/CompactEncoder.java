@@ -0,0 +1,101 @@
+package pacman;
+
+/**
+ * A small encoding of what is around pacman:
+ * <ul>
+ * <li>the number of cells pacman can move left, up, right and down before
+ * hitting a wall</li>
+ * <li>the column and row offsets of the nearest ghost and of the nearest dot
+ * other than the one pacman is eating (0 when there are none)</li>
+ * <li>a WINDOW x WINDOW window centred on pacman, row by row, with 2 for a
+ * ghost, 1 for a dot, 0 for an empty cell and -1 outside the maze</li>
+ * <li>the column and row directions pacman is moving in</li>
+ * </ul>
+ * Offsets and distances are in cells and use the Manhattan distance.
+ */
+final class CompactEncoder implements StateEncoder {
+
+	private static final int WINDOW = 5;
+	static final int SIZE = 4 + 2 + 2 + WINDOW * WINDOW + 2;
+
+	private static final int N_BLOCKS = LevelTemplate.N_BLOCKS;
+
+	private final int[] state = new int[SIZE];
+
+	public int getSize() {
+		return SIZE;
+	}
+
+	public int[] encode(PacmanView game) {
+		NavigationTable navigation = game.getLevel().getNavigation();
+		int pacman = game.getPacmanCell();
+		int column = pacman % N_BLOCKS;
+		int row = pacman / N_BLOCKS;
+		int index = 0;
+
+		for (int direction = 0; direction < 4; direction++) {
+			int distance = 0;
+			for (int cell = navigation.neighbour(pacman, direction); cell >= 0; cell = navigation.neighbour(cell,
+					direction)) {
+				distance++;
+			}
+			state[index++] = distance;
+		}
+
+		int nearest = -1;
+		int nearestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < game.getGhostCount(); i++) {
+			int ghost = game.getGhostCell(i);
+			int distance = Math.abs(ghost % N_BLOCKS - column) + Math.abs(ghost / N_BLOCKS - row);
+			if (distance < nearestDistance) {
+				nearest = ghost;
+				nearestDistance = distance;
+			}
+		}
+		index = writeOffset(nearest, column, row, index);
+
+		nearest = -1;
+		nearestDistance = Integer.MAX_VALUE;
+		// Only the dots left are visited, in increasing cell order as before
+		for (int word = 0; word < LevelTemplate.WORDS; word++) {
+			for (long dots = game.getDots(word); dots != 0; dots &= dots - 1) {
+				int cell = word << 6 | Long.numberOfTrailingZeros(dots);
+				if (cell == pacman) {
+					continue;
+				}
+				int distance = Math.abs(cell % N_BLOCKS - column) + Math.abs(cell / N_BLOCKS - row);
+				if (distance < nearestDistance) {
+					nearest = cell;
+					nearestDistance = distance;
+				}
+			}
+		}
+		index = writeOffset(nearest, column, row, index);
+
+		int windowStart = index;
+		for (int y = row - WINDOW / 2; y <= row + WINDOW / 2; y++) {
+			for (int x = column - WINDOW / 2; x <= column + WINDOW / 2; x++) {
+				boolean inside = x >= 0 && x < N_BLOCKS && y >= 0 && y < N_BLOCKS;
+				state[index++] = !inside ? -1 : game.hasDot(x + N_BLOCKS * y) ? 1 : 0;
+			}
+		}
+		for (int i = 0; i < game.getGhostCount(); i++) {
+			int ghost = game.getGhostCell(i);
+			int x = ghost % N_BLOCKS - column + WINDOW / 2;
+			int y = ghost / N_BLOCKS - row + WINDOW / 2;
+			if (x >= 0 && x < WINDOW && y >= 0 && y < WINDOW) {
+				state[windowStart + x + WINDOW * y] = 2;
+			}
+		}
+
+		state[index++] = NavigationTable.DX[game.getPacmanDirection()];
+		state[index] = NavigationTable.DY[game.getPacmanDirection()];
+		return state;
+	}
+
+	private int writeOffset(int cell, int column, int row, int index) {
+		state[index] = cell < 0 ? 0 : cell % N_BLOCKS - column;
+		state[index + 1] = cell < 0 ? 0 : cell / N_BLOCKS - row;
+		return index + 2;
+	}
+}
@@ -0,0 +1,81 @@
+package pacman;
+
+/**
+ * The original encoding: one value per cell (3 for pacman, 2 for a ghost, 0
+ * for an eaten dot and the level's initial value otherwise), followed by
+ * values that are always 0 up to the size the networks were built for.
+ */
+final class GridEncoder implements StateEncoder {
+
+	static final int SIZE = LevelTemplate.N_CELLS * 2 + 2 + PacmanEngine.MAX_GHOSTS * 2;
+
+	private final int[] state = new int[SIZE];
+	// Cells where ghosts and pacman were marked on the last state. While valid
+	// is true only those are set back to their value before marking the new ones
+	private final int[] marked = new int[PacmanEngine.MAX_GHOSTS + 1];
+	private int markedCount;
+	private boolean valid;
+	// The cells set back and the cells marked by the last encode(), which are
+	// the only ones that can have changed since the state before it
+	private final int[] changed = new int[2 * marked.length];
+	private int changedCount = -1;
+
+	public int getSize() {
+		return SIZE;
+	}
+
+	public int[] encode(PacmanView game) {
+		LevelTemplate level = game.getLevel();
+		if (valid) {
+			for (int i = 0; i < markedCount; i++) {
+				state[marked[i]] = cellState(game, level, marked[i]);
+				changed[i] = marked[i];
+			}
+			changedCount = markedCount;
+		} else {
+			level.copyInitialState(state);
+			for (int cell = 0; cell < LevelTemplate.N_CELLS; cell++) {
+				if (level.hasDot(cell) && !game.hasDot(cell)) {
+					state[cell] = 0;
+				}
+			}
+			valid = true;
+			changedCount = -1;
+		}
+		markedCount = 0;
+
+		for (int i = 0; i < game.getGhostCount(); i++) {
+			int cell = game.getGhostCell(i);
+			state[cell] = 2;
+			marked[markedCount++] = cell;
+		}
+
+		int cell = game.getPacmanCell();
+		state[cell] = 3;
+		marked[markedCount++] = cell;
+
+		if (changedCount >= 0) {
+			System.arraycopy(marked, 0, changed, changedCount, markedCount);
+			changedCount += markedCount;
+		}
+		return state;
+	}
+
+	public int[] getChanged() {
+		return changedCount < 0 ? null : changed;
+	}
+
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	public void reset() {
+		valid = false;
+	}
+
+	// Value of a cell without ghosts or pacman: 0 once its dot was eaten in the
+	// current level, the level's initial value otherwise
+	private static int cellState(PacmanView game, LevelTemplate level, int cell) {
+		return level.hasDot(cell) && !game.hasDot(cell) ? 0 : level.getInitialState(cell);
+	}
+}
@@ -0,0 +1,110 @@
+package pacman;
+
+/**
+ * Immutable description of a Pacman level, compiled once and shared by every
+ * board that plays it: the walls and dots of each cell, the network value of
+ * each cell, the navigation table and the starting cells. A board only keeps
+ * what changes during a game (the dots left, the positions) and resets it from
+ * the template with a bulk copy.
+ */
+public final class LevelTemplate {
+
+	public static final int N_BLOCKS = 15;
+	static final int N_CELLS = N_BLOCKS * N_BLOCKS;
+	// Longs in a bitboard of the cells
+	static final int WORDS = (N_CELLS + 63) / 64;
+
+	/** The level the game has always been played on */
+	public static final LevelTemplate CLASSIC = new LevelTemplate(new short[] { 19, 26, 26, 26, 18, 18, 18, 18, 18,
+			18, 18, 18, 18, 18, 22, 21, 0, 0, 0, 17, 16, 16, 16, 16, 16, 16, 16, 16, 16, 20, 21, 0, 0, 0, 17, 16, 16,
+			16, 16, 16, 16, 16, 16, 16, 20, 21, 0, 0, 0, 17, 16, 16, 24, 16, 16, 16, 16, 16, 16, 20, 17, 18, 18, 18,
+			16, 16, 20, 0, 17, 16, 16, 16, 16, 16, 20, 17, 16, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16, 16, 24, 20, 25,
+			16, 16, 16, 24, 24, 28, 0, 25, 24, 24, 16, 20, 0, 21, 1, 17, 16, 20, 0, 0, 0, 0, 0, 0, 0, 17, 20, 0, 21, 1,
+			17, 16, 16, 18, 18, 22, 0, 19, 18, 18, 16, 20, 0, 21, 1, 17, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16, 20, 0,
+			21, 1, 17, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16, 20, 0, 21, 1, 17, 16, 16, 16, 16, 16, 18, 16, 16, 16, 16,
+			20, 0, 21, 1, 17, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 20, 0, 21, 1, 25, 24, 24, 24, 24, 24, 24, 24, 24,
+			16, 16, 16, 18, 20, 9, 8, 8, 8, 8, 8, 8, 8, 8, 8, 25, 24, 24, 24, 28 },
+			new int[] { 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+					-1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+					1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+					1, -1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1,
+					1, -1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, -1,
+					1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+					1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+					1 },
+			4 * N_BLOCKS + 4, 11 * N_BLOCKS + 7);
+
+	private final short[] levelData;
+	private final int[] initialState;
+	private final long[] dots = new long[WORDS];
+	private final int dotCount;
+	private final NavigationTable navigation;
+	private final int ghostStart, pacmanStart;
+
+	/**
+	 * @param levelData    walls (bits 1, 2, 4 and 8) and dots (bits 16 and 32) of
+	 *                     each cell
+	 * @param initialState network value of each cell while its dot isn't eaten
+	 * @param ghostStart   cell where the ghosts start every life
+	 * @param pacmanStart  cell where pacman starts every life
+	 */
+	public LevelTemplate(short[] levelData, int[] initialState, int ghostStart, int pacmanStart) {
+		if (levelData.length != N_CELLS || initialState.length != N_CELLS) {
+			throw new IllegalArgumentException("A level has " + N_CELLS + " cells");
+		}
+		this.levelData = levelData.clone();
+		this.initialState = initialState.clone();
+		this.ghostStart = ghostStart;
+		this.pacmanStart = pacmanStart;
+
+		// A level ends when no cell has bit 16 or 32 set, so both count as dots
+		int count = 0;
+		for (int cell = 0; cell < N_CELLS; cell++) {
+			if ((levelData[cell] & 48) != 0) {
+				dots[cell >> 6] |= 1L << cell;
+				count++;
+			}
+		}
+		dotCount = count;
+		navigation = new NavigationTable(this.levelData, N_BLOCKS);
+	}
+
+	/** Walls of a cell, as the bits 1 (left), 2 (up), 4 (right) and 8 (down) */
+	public int getWalls(int cell) {
+		return levelData[cell] & 15;
+	}
+
+	public boolean hasDot(int cell) {
+		return (dots[cell >> 6] & 1L << cell) != 0;
+	}
+
+	public int getDotCount() {
+		return dotCount;
+	}
+
+	/** Network value of a cell while its dot isn't eaten */
+	public int getInitialState(int cell) {
+		return initialState[cell];
+	}
+
+	public int getGhostStart() {
+		return ghostStart;
+	}
+
+	public int getPacmanStart() {
+		return pacmanStart;
+	}
+
+	NavigationTable getNavigation() {
+		return navigation;
+	}
+
+	// Resets a board's dots and state to the start of a level
+	void copyDots(long[] destination) {
+		System.arraycopy(dots, 0, destination, 0, WORDS);
+	}
+
+	void copyInitialState(int[] destination) {
+		System.arraycopy(initialState, 0, destination, 0, N_CELLS);
+	}
+}
@@ -0,0 +1,200 @@
+package pacman;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import utils.GameController;
+
+/**
+ * Plans every move of a Pacman game with depth-limited Monte Carlo rollouts.
+ * The game is copied into a PacmanEngine for each rollout, which plays one
+ * of the five actions and then follows the rollout policy for depth ticks with
+ * ghosts seeded from the board's own random state. The worker threads share
+ * the rollouts of a move until its time budget runs out, and the action with
+ * the best mean score gain (minus a penalty per life lost) is played.
+ * <p>
+ * The controller has to be attached to the engine it plays on (a
+ * PacmanBoard's getEngine() for a game on screen), since the state it's given
+ * doesn't hold the whole game.
+ */
+public class LookaheadController implements GameController {
+
+	private static final int ACTIONS = 5;
+	// Fitness lost per life, worth a level's worth of dots
+	private static final double LIFE_PENALTY = 200 * 1000;
+	// Budget of a single rollout, way above what depth ticks take
+	private static final long ROLLOUT_MILLIS = 10000;
+
+	private final int depth;
+	private final long nanosPerMove;
+	private final Supplier<GameController> policy;
+	private final ExecutorService pool;
+	private final List<Worker> workers = new ArrayList<>();
+	private Supplier<int[]> game;
+
+	private long rollouts;
+	private long searchNanos;
+
+	/**
+	 * Rollouts with random moves
+	 *
+	 * @param threads       number of threads running rollouts
+	 * @param millisPerMove time spent planning each move
+	 * @param depth         ticks played after the first action of a rollout
+	 */
+	public LookaheadController(int threads, long millisPerMove, int depth) {
+		this(threads, millisPerMove, depth, null);
+	}
+
+	/**
+	 * @param policy creates the controller of each thread's rollouts, for example
+	 *               a copy of a trained network, or null for random moves
+	 */
+	public LookaheadController(int threads, long millisPerMove, int depth, Supplier<GameController> policy) {
+		this.depth = depth;
+		this.nanosPerMove = millisPerMove * 1_000_000;
+		this.policy = policy;
+		pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Lookahead");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Worker(i, threads));
+		}
+	}
+
+	public void attach(PacmanEngine board) {
+		game = board::snapshot;
+		for (Worker worker : workers) {
+			worker.attach(board.getLevel());
+		}
+	}
+
+	@Override
+	public int nextMove(int[] currentState) {
+		if (game == null) {
+			throw new IllegalStateException("The controller isn't attached to a board");
+		}
+		int[] root = game.get();
+		long start = System.nanoTime();
+		for (Worker worker : workers) {
+			worker.prepare(root, start + nanosPerMove);
+		}
+
+		double[] total = new double[ACTIONS];
+		int[] count = new int[ACTIONS];
+		try {
+			for (Future<Void> result : pool.invokeAll(workers)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return PacmanEngine.NONE;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A rollout failed", e.getCause());
+		}
+		for (Worker worker : workers) {
+			for (int action = 0; action < ACTIONS; action++) {
+				total[action] += worker.total[action];
+				count[action] += worker.count[action];
+			}
+		}
+		searchNanos += System.nanoTime() - start;
+
+		int best = PacmanEngine.NONE;
+		for (int action = 0; action < ACTIONS; action++) {
+			rollouts += count[action];
+			if (count[action] > 0 && (count[best] == 0 || total[action] / count[action] > total[best] / count[best])) {
+				best = action;
+			}
+		}
+		return best;
+	}
+
+	public long getRollouts() {
+		return rollouts;
+	}
+
+	public double getRolloutsPerSecond() {
+		return searchNanos == 0 ? 0 : rollouts * 1e9 / searchNanos;
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	// Runs the rollouts of a thread. Rollouts are numbered so that the threads
+	// split them without sharing anything: thread i runs i, i + threads, ...
+	// and rollout n plays action n % ACTIONS first
+	private final class Worker implements Callable<Void>, GameController {
+		private final int index;
+		private final int threads;
+		private final GameController rolloutPolicy;
+		private final Random random;
+		private PacmanEngine board;
+		private final double[] total = new double[ACTIONS];
+		private final int[] count = new int[ACTIONS];
+		private int[] root;
+		private long deadline;
+		private int firstMove;
+
+		Worker(int index, int threads) {
+			this.index = index;
+			this.threads = threads;
+			random = new Random(index);
+			rolloutPolicy = policy != null ? policy.get() : state -> random.nextInt(ACTIONS);
+		}
+
+		void attach(LevelTemplate level) {
+			board = new PacmanEngine(this, 0, level);
+		}
+
+		void prepare(int[] root, long deadline) {
+			this.root = root;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public Void call() {
+			Arrays.fill(total, 0);
+			Arrays.fill(count, 0);
+			long rngState = PacmanEngine.snapshotRandomState(root);
+			double rootFitness = PacmanEngine.snapshotFitness(root);
+			int rootLives = PacmanEngine.snapshotLives(root);
+
+			// Every action gets at least one rollout, even past the deadline
+			for (int rollout = index; rollout < ACTIONS || System.nanoTime() < deadline; rollout += threads) {
+				int action = rollout % ACTIONS;
+				board.restore(root);
+				board.setSeed((int) (rngState ^ rngState >>> 32) + rollout);
+				board.setBudget(PacmanEngine.snapshotSteps(root) + depth, ROLLOUT_MILLIS);
+				firstMove = action;
+				board.resumeSimulation();
+
+				total[action] += board.getFitness() - rootFitness - LIFE_PENALTY * (rootLives - board.getLives());
+				count[action]++;
+			}
+			return null;
+		}
+
+		// Controller of the rollout board: the action being tried, then the policy
+		@Override
+		public int nextMove(int[] currentState) {
+			if (firstMove >= 0) {
+				int move = firstMove;
+				firstMove = -1;
+				return move;
+			}
+			return rolloutPolicy.nextMove(currentState);
+		}
+	}
+}
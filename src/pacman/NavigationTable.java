@@ -0,0 +1,90 @@
+package pacman;
+
+/**
+ * Moves that are legal in each cell of a maze, built once per level layout.
+ * Only the dots of a level change during a game, so the wall checks done by
+ * pacman and the ghosts at every tick become lookups in this table
+ */
+final class NavigationTable {
+
+	// Directions in the order of the wall bits of the level data (1, 2, 4, 8)
+	static final int LEFT = 0;
+	static final int UP = 1;
+	static final int RIGHT = 2;
+	static final int DOWN = 3;
+	static final int STILL = 4;
+	static final int DIRECTIONS = 5;
+
+	static final int[] DX = { -1, 0, 1, 0, 0 };
+	static final int[] DY = { 0, -1, 0, 1, 0 };
+	private static final int[] REVERSE = { RIGHT, DOWN, LEFT, UP, STILL };
+	// Direction of each (dx, dy) pair, indexed by (dx + 1) + 3 * (dy + 1)
+	private static final int[] DIRECTION = { -1, UP, -1, LEFT, STILL, RIGHT, -1, DOWN, -1 };
+
+	private final int columns;
+	// Cell reached from cell * DIRECTIONS + direction, or -1 through a wall.
+	// Standing still is always legal
+	private final int[] neighbour;
+	// Directions a ghost may choose between when entering a cell while moving
+	// in some direction, at (cell * DIRECTIONS + direction) * 4, and how many
+	// there are. A ghost never reverses unless it's a dead end: then the only
+	// entry is the reverse direction (or standing still in an enclosed cell)
+	// and the count is 0, so that no random number is drawn for it
+	private final byte[] ghostChoices;
+	private final byte[] ghostChoiceCount;
+
+	NavigationTable(short[] levelData, int columns) {
+		this.columns = columns;
+		int cells = levelData.length;
+		neighbour = new int[cells * DIRECTIONS];
+		ghostChoices = new byte[cells * DIRECTIONS * 4];
+		ghostChoiceCount = new byte[cells * DIRECTIONS];
+
+		for (int cell = 0; cell < cells; cell++) {
+			int walls = levelData[cell] & 15;
+			for (int direction = 0; direction < DIRECTIONS; direction++) {
+				int index = cell * DIRECTIONS + direction;
+				neighbour[index] = direction != STILL && (walls & 1 << direction) != 0 ? -1
+						: cell + DX[direction] + columns * DY[direction];
+
+				int count = 0;
+				for (int choice = 0; choice < 4; choice++) {
+					if ((walls & 1 << choice) == 0 && choice != REVERSE[direction]) {
+						ghostChoices[index * 4 + count++] = (byte) choice;
+					}
+				}
+				ghostChoiceCount[index] = (byte) count;
+				if (count == 0) {
+					ghostChoices[index * 4] = (byte) (walls == 15 ? STILL : REVERSE[direction]);
+				}
+			}
+		}
+	}
+
+	/** Direction of a movement of at most one cell in each axis */
+	static int direction(int dx, int dy) {
+		return DIRECTION[dx + 1 + 3 * (dy + 1)];
+	}
+
+	int getColumns() {
+		return columns;
+	}
+
+	boolean canMove(int cell, int direction) {
+		return neighbour[cell * DIRECTIONS + direction] >= 0;
+	}
+
+	int neighbour(int cell, int direction) {
+		return neighbour[cell * DIRECTIONS + direction];
+	}
+
+	/** Number of directions a ghost moving in direction may take in cell, 0 at dead ends */
+	int ghostChoiceCount(int cell, int direction) {
+		return ghostChoiceCount[cell * DIRECTIONS + direction];
+	}
+
+	/** The choice-th direction a ghost may take, or its only way out when there's no choice */
+	int ghostChoice(int cell, int direction, int choice) {
+		return ghostChoices[(cell * DIRECTIONS + direction) * 4 + choice];
+	}
+}
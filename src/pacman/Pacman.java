@@ -1,20 +1,27 @@
 package pacman;
 
 import java.awt.EventQueue;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 
 import algoritmo.FeedforwardNeuralNetwork;
 import algoritmo.GeneticAlgorithm;
+import utils.ActionLog;
 import utils.Commons;
 import utils.GameController;
 
 public class Pacman extends JFrame {
 
 	public Pacman(GameController c, int seed) {
+		this(c, seed, 1);
+	}
+
+	public Pacman(GameController c, int seed, int ticksPerFrame) {
 		EventQueue.invokeLater(() -> {
-			add(new PacmanBoard(c, true, seed));
+			PacmanBoard board = new PacmanBoard(c, true, seed);
+			board.setTicksPerFrame(ticksPerFrame);
+			add(board);
 
 			setTitle("Pacman");
 			setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -24,7 +31,17 @@ public class Pacman extends JFrame {
 		});
 	}
 
-	public static void main(String[] args) throws FileNotFoundException {
+	/**
+	 * Shows the best individual of pacman.txt. If the path of an action log is
+	 * given, that episode is replayed instead, optionally followed by the number
+	 * of ticks to show per frame
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0) {
+			ActionLog log = ActionLog.read(args[0]);
+			new Pacman(log.replay(), log.getSeed(), args.length > 1 ? Integer.parseInt(args[1]) : 1);
+			return;
+		}
 		FeedforwardNeuralNetwork bestNetwork = GeneticAlgorithm.readFile("pacman.txt", 1)[0];
 		new Pacman(bestNetwork, Commons.SEED);
 	}
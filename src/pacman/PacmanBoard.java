@@ -7,13 +7,14 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Random;
+import java.awt.image.BufferedImage;
 
 import javax.swing.ImageIcon;
 import javax.swing.JPanel;
@@ -21,6 +22,10 @@ import javax.swing.Timer;
 
 import utils.*;
 
+/**
+ * Swing view of a PacmanEngine. The timer steps the engine and repaints the
+ * cells that changed, the game itself has no Swing state.
+ */
 public class PacmanBoard extends JPanel implements ActionListener, Board {
 
 	/**
@@ -28,80 +33,57 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 	 */
 	private static final long serialVersionUID = 1L;
 
-	private Random r = new Random();
-
-	public static final int NONE = 0;
-	public static final int LEFT = 1;
-	public static final int RIGHT = 2;
-	public static final int UP = 3;
-	public static final int DOWN = 4;
-
 	private Dimension d;
-	private final Font smallFont = new Font("Helvetica", Font.BOLD, 14);
+	private static final Font smallFont = new Font("Helvetica", Font.BOLD, 14);
 
 	private Image ii;
-	private final Color dotColor = new Color(192, 192, 0);
+	private static final Color dotColor = new Color(192, 192, 0);
+	private static final BasicStroke mazeStroke = new BasicStroke(2);
 	private Color mazeColor;
 
-	private boolean inGame = false;
-	private boolean dying = false;
-
 	private final int BLOCK_SIZE = 24;
-	public final static int N_BLOCKS = 15;
+	private static final int N_BLOCKS = LevelTemplate.N_BLOCKS;
+	private static final int MAX_GHOSTS = PacmanEngine.MAX_GHOSTS;
 	private final int SCREEN_SIZE = N_BLOCKS * BLOCK_SIZE;
 	private final int PAC_ANIM_DELAY = 2;
 	private final int PACMAN_ANIM_COUNT = 4;
-	public final static int MAX_GHOSTS = 12;
 
 	private int pacAnimCount = PAC_ANIM_DELAY;
 	private int pacAnimDir = 1;
 	private int pacmanAnimPos = 0;
-	private int N_GHOSTS = 6;
-	private int pacsLeft, score;
-	private int[] dx, dy;
-	private int[] ghost_x, ghost_y, ghost_dx, ghost_dy, ghostSpeed;
 
 	private Image ghost;
 	private Image pacman1, pacman2up, pacman2left, pacman2right, pacman2down;
 	private Image pacman3up, pacman3down, pacman3left, pacman3right;
 	private Image pacman4up, pacman4down, pacman4left, pacman4right;
 
-	private int pacman_x, pacman_y, pacmand_x, pacmand_y;
-	private int req_dx, req_dy, view_dx, view_dy;
-
-	private int[] state = { 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
-			1, -1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
-			1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1,
-			1, 1, 1, 1, -1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1,
-			1, -1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, -1, 1, 1,
-			1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, 1, 1, 1, 1, 1, 1, 1,
-			1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1 };
-
-	private final short[] levelData = { 19, 26, 26, 26, 18, 18, 18, 18, 18, 18, 18, 18, 18, 18, 22, 21, 0, 0, 0, 17, 16,
-			16, 16, 16, 16, 16, 16, 16, 16, 20, 21, 0, 0, 0, 17, 16, 16, 16, 16, 16, 16, 16, 16, 16, 20, 21, 0, 0, 0,
-			17, 16, 16, 24, 16, 16, 16, 16, 16, 16, 20, 17, 18, 18, 18, 16, 16, 20, 0, 17, 16, 16, 16, 16, 16, 20, 17,
-			16, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16, 16, 24, 20, 25, 16, 16, 16, 24, 24, 28, 0, 25, 24, 24, 16, 20, 0,
-			21, 1, 17, 16, 20, 0, 0, 0, 0, 0, 0, 0, 17, 20, 0, 21, 1, 17, 16, 16, 18, 18, 22, 0, 19, 18, 18, 16, 20, 0,
-			21, 1, 17, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16, 20, 0, 21, 1, 17, 16, 16, 16, 16, 20, 0, 17, 16, 16, 16,
-			20, 0, 21, 1, 17, 16, 16, 16, 16, 16, 18, 16, 16, 16, 16, 20, 0, 21, 1, 17, 16, 16, 16, 16, 16, 16, 16, 16,
-			16, 16, 20, 0, 21, 1, 25, 24, 24, 24, 24, 24, 24, 24, 24, 16, 16, 16, 18, 20, 9, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-			25, 24, 24, 24, 28 };
-
-	private final int validSpeeds[] = { 1, 2, 3, 4, 6, 8 };
-	private final int maxSpeed = 6;
-
-	private int currentSpeed = 3;
-	private short[] screenData;
+	private final PacmanEngine engine;
+	private final LevelTemplate level;
+	// Dots of the engine as of the last timer tick
+	private final long[] dots = new long[LevelTemplate.WORDS];
+
 	private Timer timer;
-	private GameController controller;
+	// Walls of the level, drawn once
+	private Image mazeImage;
+	// Dots and sprite positions as of the last repaint request, so that the next
+	// one only covers the cells that changed
+	private static final int MAX_CHANGED_DOTS = 16;
+	private long[] shownDots;
+	private int[] shownX, shownY;
+	private int shownGhosts;
+	private boolean shownInGame;
 	private boolean withGui;
 
-	private int steps = 0;
+	private int ticksPerFrame = 1;
 
 	public PacmanBoard(GameController controller, boolean withGui, int seed) {
-		this.controller = controller;
+		this(controller, withGui, seed, LevelTemplate.CLASSIC);
+	}
+
+	public PacmanBoard(GameController controller, boolean withGui, int seed, LevelTemplate level) {
+		this.engine = new PacmanEngine(controller, seed, level);
 		this.withGui = withGui;
-		r.setSeed(seed);
+		this.level = level;
 		initVariables();
 	}
 
@@ -116,18 +98,12 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 
 	private void initVariables() {
 
-		screenData = new short[N_BLOCKS * N_BLOCKS];
-		ghost_x = new int[MAX_GHOSTS];
-		ghost_dx = new int[MAX_GHOSTS];
-		ghost_y = new int[MAX_GHOSTS];
-		ghost_dy = new int[MAX_GHOSTS];
-		ghostSpeed = new int[MAX_GHOSTS];
-		dx = new int[4];
-		dy = new int[4];
-
 		if (withGui) {
 			mazeColor = new Color(5, 100, 5);
 			d = new Dimension(400, 400);
+			shownDots = new long[LevelTemplate.WORDS];
+			shownX = new int[MAX_GHOSTS + 1];
+			shownY = new int[MAX_GHOSTS + 1];
 
 			loadImages();
 			initBoard();
@@ -137,16 +113,46 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		}
 	}
 
+	public PacmanEngine getEngine() {
+		return engine;
+	}
+
 	public void runSimulation() {
-		initGame();
-		inGame = true;
-		while (inGame) {
-			int action = controller.nextMove(getState());
-			makeMove(action);
-
-			playGame();
-			steps++;
-		}
+		engine.runSimulation();
+	}
+
+	public void resumeSimulation() {
+		engine.resumeSimulation();
+	}
+
+	/**
+	 * Limits every episode to maxSteps ticks and to about maxMillis milliseconds
+	 * of simulation, counted over runSimulation() and every resumeSimulation()
+	 * that continues it. An episode that reaches either limit stops with the
+	 * score it has and is marked as truncated.
+	 */
+	public void setBudget(int maxSteps, long maxMillis) {
+		engine.setBudget(maxSteps, maxMillis);
+	}
+
+	public void cancel() {
+		engine.cancel();
+	}
+
+	public boolean isTruncated() {
+		return engine.isTruncated();
+	}
+
+	public int[] snapshot() {
+		return engine.snapshot();
+	}
+
+	public void restore(int[] snapshot) {
+		engine.restore(snapshot);
+	}
+
+	public PacmanEngine fork() {
+		return engine.fork();
 	}
 
 	@Override
@@ -157,24 +163,7 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 	}
 
 	public void makeMove(int move) {
-
-		if (move == NONE) {
-			req_dx = 0;
-			req_dy = 0;
-		} else if (move == LEFT) {
-			req_dx = -1;
-			req_dy = 0;
-		} else if (move == RIGHT) {
-			req_dx = 1;
-			req_dy = 0;
-		} else if (move == UP) {
-			req_dx = 0;
-			req_dy = -1;
-		} else if (move == DOWN) {
-			req_dx = 0;
-			req_dy = 1;
-		}
-
+		engine.makeMove(move);
 	}
 
 	private void doAnim() {
@@ -191,36 +180,6 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		}
 	}
 
-	private void playGame() {
-
-		if (dying) {
-
-			death();
-
-		} else {
-
-			movePacman();
-			moveGhosts();
-			checkMaze();
-		}
-	}
-
-	private void playGame(Graphics2D g2d) {
-
-		if (dying) {
-
-			death();
-
-		} else {
-
-			movePacman();
-			drawPacman(g2d);
-			moveGhosts();
-			drawGhost(g2d);
-			checkMaze();
-		}
-	}
-
 	private void showIntroScreen(Graphics2D g2d) {
 		timer.stop();
 		g2d.setColor(new Color(0, 32, 48));
@@ -247,199 +206,35 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		s = "Score: " + getScore();
 		g.drawString(s, SCREEN_SIZE / 2 + 96, SCREEN_SIZE + 16);
 
-		for (i = 0; i < pacsLeft; i++) {
+		for (i = 0; i < engine.getLives(); i++) {
 			g.drawImage(pacman3left, i * 28 + 8, SCREEN_SIZE + 1, this);
 		}
 	}
 
-	private void checkMaze() {
-
-		short i = 0;
-		boolean finished = true;
-
-		while (i < N_BLOCKS * N_BLOCKS && finished) {
-
-			if ((screenData[i] & 48) != 0) {
-				finished = false;
-			}
-
-			i++;
-		}
-
-		if (finished) {
-
-			score += 50;
-
-			if (N_GHOSTS < MAX_GHOSTS) {
-				N_GHOSTS++;
-			}
-
-			if (currentSpeed < maxSpeed) {
-				currentSpeed++;
-			}
-
-			initLevel();
-		}
-	}
-
-	private void death() {
-
-		pacsLeft--;
-
-		if (pacsLeft == 0) {
-			inGame = false;
-		}
-
-		continueLevel();
-	}
-
-	private void moveGhosts() {
-
-		short i;
-		int pos;
-		int count;
-
-		for (i = 0; i < N_GHOSTS; i++) {
-			if (ghost_x[i] % BLOCK_SIZE == 0 && ghost_y[i] % BLOCK_SIZE == 0) {
-				if (Math.abs(ghost_x[i] - pacman_x) < 12 + BLOCK_SIZE && Math.abs(ghost_y[i] - pacman_y) < 12) {
-					ghost_x[i] = pacman_x;
-				} else if (Math.abs(ghost_y[i] - pacman_y) == 12 + BLOCK_SIZE && Math.abs(ghost_x[i] - pacman_x) < 12) {
-					ghost_y[i] = pacman_y;
-				} else {
-					pos = ghost_x[i] / BLOCK_SIZE + N_BLOCKS * (int) (ghost_y[i] / BLOCK_SIZE);
-
-					count = 0;
-
-					if ((screenData[pos] & 1) == 0 && ghost_dx[i] != 1) {
-						dx[count] = -1;
-						dy[count] = 0;
-						count++;
-					}
-
-					if ((screenData[pos] & 2) == 0 && ghost_dy[i] != 1) {
-						dx[count] = 0;
-						dy[count] = -1;
-						count++;
-					}
-
-					if ((screenData[pos] & 4) == 0 && ghost_dx[i] != -1) {
-						dx[count] = 1;
-						dy[count] = 0;
-						count++;
-					}
-
-					if ((screenData[pos] & 8) == 0 && ghost_dy[i] != -1) {
-						dx[count] = 0;
-						dy[count] = 1;
-						count++;
-					}
-
-					if (count == 0) {
-
-						if ((screenData[pos] & 15) == 15) {
-							ghost_dx[i] = 0;
-							ghost_dy[i] = 0;
-						} else {
-							ghost_dx[i] = -ghost_dx[i];
-							ghost_dy[i] = -ghost_dy[i];
-						}
-
-					} else {
-
-						count = r.nextInt(count);
-
-						if (count > 3) {
-							count = 3;
-						}
-
-						ghost_dx[i] = dx[count];
-						ghost_dy[i] = dy[count];
-					}
-
-					ghost_x[i] = ghost_x[i] + (ghost_dx[i] * BLOCK_SIZE);
-					ghost_y[i] = ghost_y[i] + (ghost_dy[i] * BLOCK_SIZE);
-				}
-			}
-
-			if (pacman_x > (ghost_x[i] - 12) && pacman_x < (ghost_x[i] + 12) && pacman_y > (ghost_y[i] - 12)
-					&& pacman_y < (ghost_y[i] + 12) && inGame) {
-
-				dying = true;
-			}
-		}
-	}
-
 	private void drawGhost(Graphics2D g2d) {
-		for (int i = 0; i < N_GHOSTS; i++) {
+		for (int i = 0; i < engine.getGhostCount(); i++) {
 
-			g2d.drawImage(ghost, ghost_x[i] + 1, ghost_y[i] + 1, this);
+			g2d.drawImage(ghost, x(engine.getGhostCell(i)) + 1, y(engine.getGhostCell(i)) + 1, this);
 
 		}
 	}
 
-	private void movePacman() {
-
-		int pos;
-		short ch;
-		pos = pacman_x / BLOCK_SIZE + N_BLOCKS * (int) (pacman_y / BLOCK_SIZE);
-
-		if (req_dx == -pacmand_x && req_dy == -pacmand_y) {
-			pacmand_x = req_dx;
-			pacmand_y = req_dy;
-			view_dx = pacmand_x;
-			view_dy = pacmand_y;
-		}
-
-		if (pacman_x % BLOCK_SIZE == 0 && pacman_y % BLOCK_SIZE == 0) {
-
-			pos = pacman_x / BLOCK_SIZE + N_BLOCKS * (int) (pacman_y / BLOCK_SIZE);
-			ch = screenData[pos];
-
-			if ((ch & 16) != 0) {
-				screenData[pos] = (short) (ch & 15);
-				state[pos] = 0;
-				score++;
-			}
-
-			if (req_dx != 0 || req_dy != 0) {
-				if (!((req_dx == -1 && req_dy == 0 && (ch & 1) != 0) || (req_dx == 1 && req_dy == 0 && (ch & 4) != 0)
-						|| (req_dx == 0 && req_dy == -1 && (ch & 2) != 0)
-						|| (req_dx == 0 && req_dy == 1 && (ch & 8) != 0))) {
-					pacmand_x = req_dx;
-					pacmand_y = req_dy;
-					view_dx = pacmand_x;
-					view_dy = pacmand_y;
-				}
-			}
-
-			// Check for standstill
-			if ((pacmand_x == -1 && pacmand_y == 0 && (ch & 1) != 0)
-					|| (pacmand_x == 1 && pacmand_y == 0 && (ch & 4) != 0)
-					|| (pacmand_x == 0 && pacmand_y == -1 && (ch & 2) != 0)
-					|| (pacmand_x == 0 && pacmand_y == 1 && (ch & 8) != 0)) {
-				pacmand_x = 0;
-				pacmand_y = 0;
-			}
-		}
-		pacman_x = pacman_x + BLOCK_SIZE * pacmand_x;
-		pacman_y = pacman_y + BLOCK_SIZE * pacmand_y;
-
-	}
-
 	private void drawPacman(Graphics2D g2d) {
 
-		if (view_dx == -1) {
-			drawPacnanLeft(g2d);
-		} else if (view_dx == 1) {
-			drawPacmanRight(g2d);
-		} else if (view_dy == -1) {
-			drawPacmanUp(g2d);
+		int pacman_x = x(engine.getPacmanCell());
+		int pacman_y = y(engine.getPacmanCell());
+		if (engine.getViewDx() == -1) {
+			drawPacnanLeft(g2d, pacman_x, pacman_y);
+		} else if (engine.getViewDx() == 1) {
+			drawPacmanRight(g2d, pacman_x, pacman_y);
+		} else if (engine.getViewDy() == -1) {
+			drawPacmanUp(g2d, pacman_x, pacman_y);
 		} else {
-			drawPacmanDown(g2d);
+			drawPacmanDown(g2d, pacman_x, pacman_y);
 		}
 	}
 
-	private void drawPacmanUp(Graphics2D g2d) {
+	private void drawPacmanUp(Graphics2D g2d, int pacman_x, int pacman_y) {
 
 		switch (pacmanAnimPos) {
 		case 1:
@@ -457,7 +252,7 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		}
 	}
 
-	private void drawPacmanDown(Graphics2D g2d) {
+	private void drawPacmanDown(Graphics2D g2d, int pacman_x, int pacman_y) {
 
 		switch (pacmanAnimPos) {
 		case 1:
@@ -475,7 +270,7 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		}
 	}
 
-	private void drawPacnanLeft(Graphics2D g2d) {
+	private void drawPacnanLeft(Graphics2D g2d, int pacman_x, int pacman_y) {
 
 		switch (pacmanAnimPos) {
 		case 1:
@@ -493,7 +288,7 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		}
 	}
 
-	private void drawPacmanRight(Graphics2D g2d) {
+	private void drawPacmanRight(Graphics2D g2d, int pacman_x, int pacman_y) {
 
 		switch (pacmanAnimPos) {
 		case 1:
@@ -513,93 +308,66 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 
 	private void drawMaze(Graphics2D g2d) {
 
+		if (mazeImage == null) {
+			mazeImage = createMazeImage();
+		}
+		g2d.drawImage(mazeImage, 0, 0, this);
+		// The intro screen box is drawn with the same stroke as the walls
+		g2d.setStroke(mazeStroke);
+
+		// Only the cells with a dot are visited
+		g2d.setColor(dotColor);
+		for (int word = 0; word < LevelTemplate.WORDS; word++) {
+			for (long bits = dots[word]; bits != 0; bits &= bits - 1) {
+				int i = word * 64 + Long.numberOfTrailingZeros(bits);
+				g2d.fillRect(i % N_BLOCKS * BLOCK_SIZE + 11, i / N_BLOCKS * BLOCK_SIZE + 11, 2, 2);
+			}
+		}
+	}
+
+	// The walls never change during a game, so they're drawn once into an image
+	// compatible with the screen, which Java2D can keep in video memory
+	private Image createMazeImage() {
+
+		// Walls on the right and bottom edges are one pixel wider than the maze
+		int size = SCREEN_SIZE + 1;
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		BufferedImage image = gc != null ? gc.createCompatibleImage(size, size)
+				: new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+
+		g2d.setColor(Color.black);
+		g2d.fillRect(0, 0, size, size);
+		g2d.setColor(mazeColor);
+		g2d.setStroke(mazeStroke);
+
 		short i = 0;
 		int x, y;
 
 		for (y = 0; y < SCREEN_SIZE; y += BLOCK_SIZE) {
 			for (x = 0; x < SCREEN_SIZE; x += BLOCK_SIZE) {
 
-				g2d.setColor(mazeColor);
-				g2d.setStroke(new BasicStroke(2));
-
-				if ((screenData[i] & 1) != 0) {
+				if ((level.getWalls(i) & 1) != 0) {
 					g2d.drawLine(x, y, x, y + BLOCK_SIZE - 1);
 				}
 
-				if ((screenData[i] & 2) != 0) {
+				if ((level.getWalls(i) & 2) != 0) {
 					g2d.drawLine(x, y, x + BLOCK_SIZE - 1, y);
 				}
 
-				if ((screenData[i] & 4) != 0) {
+				if ((level.getWalls(i) & 4) != 0) {
 					g2d.drawLine(x + BLOCK_SIZE - 1, y, x + BLOCK_SIZE - 1, y + BLOCK_SIZE - 1);
 				}
 
-				if ((screenData[i] & 8) != 0) {
+				if ((level.getWalls(i) & 8) != 0) {
 					g2d.drawLine(x, y + BLOCK_SIZE - 1, x + BLOCK_SIZE - 1, y + BLOCK_SIZE - 1);
 				}
 
-				if ((screenData[i] & 16) != 0) {
-					g2d.setColor(dotColor);
-					g2d.fillRect(x + 11, y + 11, 2, 2);
-				}
-
 				i++;
 			}
 		}
-	}
-
-	private void initGame() {
-
-		score = 0;
-
-		pacsLeft = 2;
-		score = 0;
-		initLevel();
-		N_GHOSTS = 6;
-		currentSpeed = 3;
-	}
-
-	private void initLevel() {
-
-		int i;
-		for (i = 0; i < N_BLOCKS * N_BLOCKS; i++) {
-			screenData[i] = levelData[i];
-		}
-
-		continueLevel();
-	}
-
-	private void continueLevel() {
-
-		short i;
-		int dx = 1;
-		int random;
-
-		for (i = 0; i < N_GHOSTS; i++) {
-
-			ghost_y[i] = 4 * BLOCK_SIZE;
-			ghost_x[i] = 4 * BLOCK_SIZE;
-			ghost_dy[i] = 0;
-			ghost_dx[i] = dx;
-			dx = -dx;
-			random = (int) (r.nextDouble() * (currentSpeed + 1));
-
-			if (random > currentSpeed) {
-				random = currentSpeed;
-			}
-
-			ghostSpeed[i] = validSpeeds[random];
-		}
-
-		pacman_x = 7 * BLOCK_SIZE;
-		pacman_y = 11 * BLOCK_SIZE;
-		pacmand_x = 0;
-		pacmand_y = 0;
-		req_dx = 0;
-		req_dy = 0;
-		view_dx = -1;
-		view_dy = 0;
-		dying = false;
+		g2d.dispose();
+		return image;
 	}
 
 	private void loadImages() {
@@ -639,8 +407,9 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 		drawScore(g2d);
 		doAnim();
 
-		if (inGame) {
-			playGame(g2d);
+		if (engine.isInGame()) {
+			drawPacman(g2d);
+			drawGhost(g2d);
 		} else {
 			showIntroScreen(g2d);
 		}
@@ -658,48 +427,97 @@ public class PacmanBoard extends JPanel implements ActionListener, Board {
 			int key = e.getKeyCode();
 
 			if (key == 's' || key == 'S') {
-				inGame = true;
+				engine.startEpisode();
 				timer.start();
-				initGame();
 			}
 		}
 	}
 
 	public double getScore() {
-		return score * 1000 + (double) steps / 100;
+		return engine.getFitness();
 	}
 
 	@Override
 	public void actionPerformed(ActionEvent e) {
-		if (inGame)
-			steps++;
-
-		int action = controller.nextMove(getState());
-		makeMove(action);
-		repaint();
+		// The game is stepped here and not while painting, so that every timer tick
+		// is exactly ticksPerFrame ticks of the game, as in runSimulation()
+		for (int i = 0; i < ticksPerFrame && engine.isInGame(); i++) {
+			engine.step();
+		}
+		engine.copyDots(dots);
+		repaintChanges();
 	}
 
-	private int[] getState() {
-		int[] state = new int[Commons.PACMAN_STATE_SIZE];
-		for (int i = 0; i < N_BLOCKS * N_BLOCKS; i++) {
-			state[i] = this.state[i];
+	// Repaints the cells whose dot or sprite changed since the last call and the
+	// score line. A new level or game and the intro screen repaint everything
+	private void repaintChanges() {
+
+		int changedDots = 0;
+		for (int i = 0; i < LevelTemplate.WORDS; i++) {
+			changedDots += Long.bitCount(dots[i] ^ shownDots[i]);
+		}
+
+		boolean inGame = engine.isInGame();
+		int ghosts = engine.getGhostCount();
+		if (!inGame || !shownInGame || ghosts != shownGhosts || changedDots > MAX_CHANGED_DOTS) {
+			repaint();
+		} else {
+			for (int word = 0; word < LevelTemplate.WORDS; word++) {
+				for (long bits = dots[word] ^ shownDots[word]; bits != 0; bits &= bits - 1) {
+					int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+					repaint(cell % N_BLOCKS * BLOCK_SIZE, cell / N_BLOCKS * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE);
+				}
+			}
+			// Pacman is shown last, and is repainted even if it didn't move to animate it
+			for (int i = 0; i <= ghosts; i++) {
+				int cell = i < ghosts ? engine.getGhostCell(i) : engine.getPacmanCell();
+				repaint(shownX[i], shownY[i], BLOCK_SIZE, BLOCK_SIZE);
+				repaint(x(cell), y(cell), BLOCK_SIZE, BLOCK_SIZE);
+			}
+			repaint(0, SCREEN_SIZE, d.width, d.height - SCREEN_SIZE);
 		}
-		for (int i = 0; i < N_GHOSTS; i++) {
-			int pos = ghost_x[i] / BLOCK_SIZE + N_BLOCKS * (int) (ghost_y[i] / BLOCK_SIZE);
-			state[pos] = 2;
+
+		System.arraycopy(dots, 0, shownDots, 0, LevelTemplate.WORDS);
+		for (int i = 0; i <= ghosts; i++) {
+			int cell = i < ghosts ? engine.getGhostCell(i) : engine.getPacmanCell();
+			shownX[i] = x(cell);
+			shownY[i] = y(cell);
 		}
+		shownGhosts = ghosts;
+		shownInGame = inGame;
+	}
+
+	// Pixel coordinates of the top left corner of a cell
+	private int x(int cell) {
+		return cell % N_BLOCKS * BLOCK_SIZE;
+	}
+
+	private int y(int cell) {
+		return cell / N_BLOCKS * BLOCK_SIZE;
+	}
 
-		int pos = pacman_x / BLOCK_SIZE + N_BLOCKS * (int) (pacman_y / BLOCK_SIZE);
-		state[pos] = 3;
+	// Number of ticks simulated between two repaints of the GUI
+	public void setTicksPerFrame(int ticksPerFrame) {
+		this.ticksPerFrame = Math.max(1, ticksPerFrame);
+	}
+
+	public void setEncoding(StateEncoding encoding) {
+		engine.setEncoding(encoding);
+	}
 
-		return state;
+	public LevelTemplate getLevel() {
+		return level;
 	}
 
 	public void setSeed(int seed) {
-		r.setSeed(seed);
+		engine.setSeed(seed);
 	}
 
 	public double getFitness() {
 		return getScore();
 	}
+
+	public int getTicks() {
+		return engine.getTicks();
+	}
 }
@@ -0,0 +1,487 @@
+package pacman;
+
+import utils.*;
+
+/**
+ * The rules of Pacman without any Swing or AWT class, so that games can be
+ * simulated on a headless JVM; PacmanBoard only draws an engine's game. The
+ * dots left are kept as a 225-bit bitboard (four longs), the rest of the maze
+ * is read from the shared LevelTemplate. Pacman and the ghosts always move a whole block
+ * per tick, so their positions are kept as cell indices instead of pixels.
+ * Legal moves are looked up in the NavigationTable of the level, and the dot
+ * eaten and level cleared checks are bit operations.
+ */
+public class PacmanEngine implements LockstepBoard, BudgetedBoard, PacmanView {
+
+	public static final int NONE = 0;
+	public static final int LEFT = 1;
+	public static final int RIGHT = 2;
+	public static final int UP = 3;
+	public static final int DOWN = 4;
+
+	public static final int MAX_GHOSTS = 12;
+	private static final int N_BLOCKS = LevelTemplate.N_BLOCKS;
+	private static final int WORDS = LevelTemplate.WORDS;
+
+	private static final int[] VALID_SPEEDS = { 1, 2, 3, 4, 6, 8 };
+	private static final int MAX_SPEED = VALID_SPEEDS.length - 1;
+
+	private StatefulRandom r = new StatefulRandom();
+	private GameController controller;
+
+	private final LevelTemplate level;
+	private final NavigationTable navigation;
+	private final long[] dots = new long[WORDS];
+
+	private boolean inGame = false;
+	private boolean dying = false;
+	private int nGhosts = 6;
+	private int pacsLeft, score;
+	private int currentSpeed = 3;
+	private int steps = 0;
+
+	private final int[] ghostCell = new int[MAX_GHOSTS];
+	private final int[] ghostDx = new int[MAX_GHOSTS];
+	private final int[] ghostDy = new int[MAX_GHOSTS];
+	private final int[] ghostSpeed = new int[MAX_GHOSTS];
+
+	private int pacmanCell, pacmanDx, pacmanDy;
+	private int reqDx, reqDy, viewDx, viewDy;
+
+	private StateEncoding encoding = Commons.PACMAN_ENCODING;
+	private StateEncoder encoder = encoding.create();
+
+	private int maxSteps = Commons.PACMAN_MAX_STEPS;
+	private long maxMillis = Commons.PACMAN_MAX_MILLIS;
+	private volatile boolean cancelled;
+	// Whether resumeSimulation() is running, guarded by the engine's lock so that
+	// a cancel() arriving after it returned, such as a late watchdog alarm, can't
+	// stop the next one
+	private boolean running;
+	private boolean truncated;
+	// Time the current episode has been simulated for, over every resume
+	private long playedNanos;
+
+	public PacmanEngine(GameController controller, int seed) {
+		this(controller, seed, LevelTemplate.CLASSIC);
+	}
+
+	public PacmanEngine(GameController controller, int seed, LevelTemplate level) {
+		this.controller = controller;
+		this.level = level;
+		navigation = level.getNavigation();
+		r.setSeed(seed);
+	}
+
+	public void runSimulation() {
+		startEpisode();
+		resumeSimulation();
+	}
+
+	// Also used by PacmanBoard, which steps the game on its timer
+	public void startEpisode() {
+		initGame();
+		inGame = true;
+		truncated = false;
+		playedNanos = 0;
+	}
+
+	// The time budget is for the whole episode, so resuming one stopped by its
+	// step budget only leaves it the time it hasn't used yet
+	public void resumeSimulation() {
+		synchronized (this) {
+			running = true;
+		}
+		long start = System.nanoTime();
+		long deadline = start + maxMillis * 1_000_000 - playedNanos;
+		truncated = false;
+		while (inGame) {
+			if (cancelled || steps >= maxSteps || (steps & 63) == 0 && System.nanoTime() - deadline > 0) {
+				truncated = true;
+				break;
+			}
+			step();
+		}
+		playedNanos += System.nanoTime() - start;
+		synchronized (this) {
+			running = false;
+			cancelled = false;
+		}
+	}
+
+	// Wall-clock time the current episode has been simulated for
+	public long getPlayedMillis() {
+		return playedNanos / 1_000_000;
+	}
+
+	// One tick of the game. Package-private so that PacmanBoard can step the game
+	// on its timer and a single tick can be benchmarked
+	void step() {
+		int[] state = getState();
+		advance(controller.nextMove(state, encoder.getChanged(), encoder.getChangedCount()));
+	}
+
+	public void advance(int move) {
+		makeMove(move);
+
+		if (dying) {
+			death();
+		} else {
+			movePacman();
+			moveGhosts();
+			checkMaze();
+		}
+		steps++;
+		if (inGame && steps >= maxSteps) {
+			truncated = true;
+		}
+	}
+
+	public void setBudget(int maxSteps, long maxMillis) {
+		this.maxSteps = maxSteps;
+		this.maxMillis = maxMillis;
+	}
+
+	// Same as the step budget of setBudget, which is Commons.PACMAN_MAX_STEPS by
+	// default
+	public void setTickBudget(int maxTicks) {
+		maxSteps = maxTicks;
+	}
+
+	public synchronized void cancel() {
+		if (running) {
+			cancelled = true;
+		}
+	}
+
+	public boolean isInGame() {
+		return inGame && steps < maxSteps;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public void setSeed(int seed) {
+		r.setSeed(seed);
+	}
+
+	public double getFitness() {
+		return fitness(score, steps);
+	}
+
+	private static double fitness(int score, int steps) {
+		return score * 1000 + (double) steps / 100;
+	}
+
+	public int getTicks() {
+		return steps;
+	}
+
+	public int getLives() {
+		return pacsLeft;
+	}
+
+	// Direction pacman is drawn facing, the last one it moved in
+	int getViewDx() {
+		return viewDx;
+	}
+
+	int getViewDy() {
+		return viewDy;
+	}
+
+	public void makeMove(int move) {
+		if (move == NONE) {
+			reqDx = 0;
+			reqDy = 0;
+		} else if (move == LEFT) {
+			reqDx = -1;
+			reqDy = 0;
+		} else if (move == RIGHT) {
+			reqDx = 1;
+			reqDy = 0;
+		} else if (move == UP) {
+			reqDx = 0;
+			reqDy = -1;
+		} else if (move == DOWN) {
+			reqDx = 0;
+			reqDy = 1;
+		}
+	}
+
+	private void initGame() {
+		pacsLeft = 2;
+		score = 0;
+		initLevel();
+		nGhosts = 6;
+		currentSpeed = 3;
+	}
+
+	private void initLevel() {
+		level.copyDots(dots);
+		// Eaten cells show their initial value again
+		encoder.reset();
+		continueLevel();
+	}
+
+	private void continueLevel() {
+		int direction = 1;
+		for (int i = 0; i < nGhosts; i++) {
+			ghostCell[i] = level.getGhostStart();
+			ghostDy[i] = 0;
+			ghostDx[i] = direction;
+			direction = -direction;
+			int random = (int) (r.nextDouble() * (currentSpeed + 1));
+			if (random > currentSpeed) {
+				random = currentSpeed;
+			}
+			ghostSpeed[i] = VALID_SPEEDS[random];
+		}
+
+		pacmanCell = level.getPacmanStart();
+		pacmanDx = 0;
+		pacmanDy = 0;
+		reqDx = 0;
+		reqDy = 0;
+		viewDx = -1;
+		viewDy = 0;
+		dying = false;
+	}
+
+	private void death() {
+		pacsLeft--;
+		if (pacsLeft == 0) {
+			inGame = false;
+		}
+		continueLevel();
+	}
+
+	private void checkMaze() {
+		if ((dots[0] | dots[1] | dots[2] | dots[3]) == 0) {
+			score += 50;
+			if (nGhosts < MAX_GHOSTS) {
+				nGhosts++;
+			}
+			if (currentSpeed < MAX_SPEED) {
+				currentSpeed++;
+			}
+			initLevel();
+		}
+	}
+
+	private void movePacman() {
+		if (reqDx == -pacmanDx && reqDy == -pacmanDy) {
+			pacmanDx = reqDx;
+			pacmanDy = reqDy;
+			viewDx = pacmanDx;
+			viewDy = pacmanDy;
+		}
+
+		int word = pacmanCell >> 6;
+		long bit = 1L << pacmanCell;
+		if ((dots[word] & bit) != 0) {
+			dots[word] &= ~bit;
+			score++;
+		}
+
+		if ((reqDx != 0 || reqDy != 0) && navigation.canMove(pacmanCell, NavigationTable.direction(reqDx, reqDy))) {
+			pacmanDx = reqDx;
+			pacmanDy = reqDy;
+			viewDx = pacmanDx;
+			viewDy = pacmanDy;
+		}
+
+		// Check for standstill
+		if (!navigation.canMove(pacmanCell, NavigationTable.direction(pacmanDx, pacmanDy))) {
+			pacmanDx = 0;
+			pacmanDy = 0;
+		}
+		pacmanCell += pacmanDx + N_BLOCKS * pacmanDy;
+	}
+
+	private void moveGhosts() {
+		int pacmanColumn = pacmanCell % N_BLOCKS;
+		int pacmanRow = pacmanCell / N_BLOCKS;
+
+		for (int i = 0; i < nGhosts; i++) {
+			int cell = ghostCell[i];
+			// A ghost less than 1.5 blocks away on the same row jumps onto pacman. The
+			// pixel rules this was ported from had a vertical counterpart comparing
+			// against a distance that is never a whole number of blocks, so it's left out
+			if (cell / N_BLOCKS == pacmanRow && Math.abs(cell % N_BLOCKS - pacmanColumn) <= 1) {
+				ghostCell[i] = pacmanCell;
+			} else {
+				int direction = NavigationTable.direction(ghostDx[i], ghostDy[i]);
+				// Dead ends have no choice to draw a random number for
+				int count = navigation.ghostChoiceCount(cell, direction);
+				direction = navigation.ghostChoice(cell, direction, count == 0 ? 0 : r.nextInt(count));
+
+				ghostDx[i] = NavigationTable.DX[direction];
+				ghostDy[i] = NavigationTable.DY[direction];
+				ghostCell[i] = navigation.neighbour(cell, direction);
+			}
+
+			if (ghostCell[i] == pacmanCell && inGame) {
+				dying = true;
+			}
+		}
+	}
+
+	private int[] getState() {
+		return encoder.encode(this);
+	}
+
+	public int getStateSize() {
+		return encoder.getSize();
+	}
+
+	public void writeState(int[] states, int offset) {
+		System.arraycopy(encoder.encode(this), 0, states, offset, encoder.getSize());
+	}
+
+	public void setEncoding(StateEncoding encoding) {
+		this.encoding = encoding;
+		encoder = encoding.create();
+	}
+
+	public LevelTemplate getLevel() {
+		return level;
+	}
+
+	public boolean hasDot(int cell) {
+		return (dots[cell >> 6] & 1L << cell) != 0;
+	}
+
+	public long getDots(int word) {
+		return dots[word];
+	}
+
+	// Copies the dots bitboard, for PacmanBoard to find the cells to repaint
+	void copyDots(long[] destination) {
+		System.arraycopy(dots, 0, destination, 0, WORDS);
+	}
+
+	public int getPacmanCell() {
+		return pacmanCell;
+	}
+
+	public int getPacmanDirection() {
+		return NavigationTable.direction(pacmanDx, pacmanDy);
+	}
+
+	public int getGhostCount() {
+		return nGhosts;
+	}
+
+	public int getGhostCell(int ghost) {
+		return ghostCell[ghost];
+	}
+
+	// Layout of a snapshot: the fields below, the 4 arrays of ghost values and
+	// the dots bitboard as pairs of ints. The offsets that are read without
+	// restoring the snapshot are named
+	private static final int SNAPSHOT_LIVES = 3;
+	private static final int SNAPSHOT_SCORE = 4;
+	private static final int SNAPSHOT_STEPS = 5;
+	private static final int SNAPSHOT_RANDOM = 14;
+	private static final int SNAPSHOT_CHECK = 16;
+	private static final int SNAPSHOT_FIELDS = 18;
+	private static final int SNAPSHOT_SIZE = SNAPSHOT_FIELDS + 4 * MAX_GHOSTS + 2 * WORDS;
+
+	public int[] snapshot() {
+		int[] snapshot = new int[SNAPSHOT_SIZE];
+		snapshot[0] = inGame ? 1 : 0;
+		snapshot[1] = dying ? 1 : 0;
+		snapshot[2] = nGhosts;
+		snapshot[SNAPSHOT_LIVES] = pacsLeft;
+		snapshot[SNAPSHOT_SCORE] = score;
+		snapshot[SNAPSHOT_STEPS] = steps;
+		snapshot[6] = currentSpeed;
+		snapshot[7] = pacmanCell;
+		snapshot[8] = pacmanDx;
+		snapshot[9] = pacmanDy;
+		snapshot[10] = reqDx;
+		snapshot[11] = reqDy;
+		snapshot[12] = viewDx;
+		snapshot[13] = viewDy;
+		long rngState = r.getState();
+		snapshot[SNAPSHOT_RANDOM] = (int) (rngState >>> 32);
+		snapshot[SNAPSHOT_RANDOM + 1] = (int) rngState;
+		snapshot[SNAPSHOT_CHECK] = SNAPSHOT_SIZE;
+
+		int offset = SNAPSHOT_FIELDS;
+		System.arraycopy(ghostCell, 0, snapshot, offset, MAX_GHOSTS);
+		System.arraycopy(ghostDx, 0, snapshot, offset += MAX_GHOSTS, MAX_GHOSTS);
+		System.arraycopy(ghostDy, 0, snapshot, offset += MAX_GHOSTS, MAX_GHOSTS);
+		System.arraycopy(ghostSpeed, 0, snapshot, offset += MAX_GHOSTS, MAX_GHOSTS);
+		offset += MAX_GHOSTS;
+		for (int i = 0; i < WORDS; i++) {
+			snapshot[offset++] = (int) (dots[i] >>> 32);
+			snapshot[offset++] = (int) dots[i];
+		}
+		return snapshot;
+	}
+
+	public void restore(int[] snapshot) {
+		if (snapshot.length != SNAPSHOT_SIZE || snapshot[SNAPSHOT_CHECK] != SNAPSHOT_SIZE) {
+			throw new IllegalArgumentException("Snapshot doesn't match this board");
+		}
+		inGame = snapshot[0] != 0;
+		dying = snapshot[1] != 0;
+		nGhosts = snapshot[2];
+		pacsLeft = snapshot[SNAPSHOT_LIVES];
+		score = snapshot[SNAPSHOT_SCORE];
+		steps = snapshot[SNAPSHOT_STEPS];
+		currentSpeed = snapshot[6];
+		pacmanCell = snapshot[7];
+		pacmanDx = snapshot[8];
+		pacmanDy = snapshot[9];
+		reqDx = snapshot[10];
+		reqDy = snapshot[11];
+		viewDx = snapshot[12];
+		viewDy = snapshot[13];
+		r.setState(snapshotRandomState(snapshot));
+
+		int offset = SNAPSHOT_FIELDS;
+		System.arraycopy(snapshot, offset, ghostCell, 0, MAX_GHOSTS);
+		System.arraycopy(snapshot, offset += MAX_GHOSTS, ghostDx, 0, MAX_GHOSTS);
+		System.arraycopy(snapshot, offset += MAX_GHOSTS, ghostDy, 0, MAX_GHOSTS);
+		System.arraycopy(snapshot, offset += MAX_GHOSTS, ghostSpeed, 0, MAX_GHOSTS);
+		offset += MAX_GHOSTS;
+		for (int i = 0; i < WORDS; i++) {
+			dots[i] = (long) snapshot[offset++] << 32 | (snapshot[offset++] & 0xFFFFFFFFL);
+		}
+		encoder.reset();
+		// The time budget of the restored game starts over, as for a new episode
+		playedNanos = 0;
+		truncated = false;
+		cancelled = false;
+	}
+
+	// What getLives() and getFitness() would return after restoring a snapshot,
+	// the ticks it has played and the state of its ghosts' random generator
+	static int snapshotLives(int[] snapshot) {
+		return snapshot[SNAPSHOT_LIVES];
+	}
+
+	static int snapshotSteps(int[] snapshot) {
+		return snapshot[SNAPSHOT_STEPS];
+	}
+
+	static double snapshotFitness(int[] snapshot) {
+		return fitness(snapshot[SNAPSHOT_SCORE], snapshot[SNAPSHOT_STEPS]);
+	}
+
+	static long snapshotRandomState(int[] snapshot) {
+		return (long) snapshot[SNAPSHOT_RANDOM] << 32 | (snapshot[SNAPSHOT_RANDOM + 1] & 0xFFFFFFFFL);
+	}
+
+	public PacmanEngine fork() {
+		PacmanEngine copy = new PacmanEngine(controller, 0, level);
+		copy.setEncoding(encoding);
+		copy.setBudget(maxSteps, maxMillis);
+		copy.restore(snapshot());
+		return copy;
+	}
+}
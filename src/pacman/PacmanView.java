@@ -0,0 +1,25 @@
+package pacman;
+
+/**
+ * Read-only view of a Pacman game in cells, implemented by the boards so that
+ * a StateEncoder doesn't depend on how each of them keeps the game.
+ */
+interface PacmanView {
+
+	LevelTemplate getLevel();
+
+	/** Whether the dot of a cell is still there in the current level */
+	boolean hasDot(int cell);
+
+	/** Word of the dots bitboard with the cells word * 64 to word * 64 + 63 */
+	long getDots(int word);
+
+	int getPacmanCell();
+
+	/** Direction pacman is moving in, as a NavigationTable direction */
+	int getPacmanDirection();
+
+	int getGhostCount();
+
+	int getGhostCell(int ghost);
+}
@@ -0,0 +1,38 @@
+package pacman;
+
+/**
+ * Turns a Pacman game into the values given to a GameController. Every board
+ * has its own encoder, which may keep the last state and only update what
+ * changed.
+ */
+interface StateEncoder {
+
+	int getSize();
+
+	/**
+	 * Returns the state of the game, in a buffer of getSize() values owned by the
+	 * encoder and reused for the next call
+	 */
+	int[] encode(PacmanView game);
+
+	/**
+	 * Indices of the last state that may differ from the state before it, or
+	 * null when they aren't known, see GameController.nextMove(int[], int[], int).
+	 * The array is owned by the encoder, like the state
+	 */
+	default int[] getChanged() {
+		return null;
+	}
+
+	// Number of indices in getChanged(), -1 when they aren't known
+	default int getChangedCount() {
+		return -1;
+	}
+
+	/**
+	 * Called when the game changed in more ways than its actors moving and
+	 * pacman eating dots, such as a new level or a restored snapshot
+	 */
+	default void reset() {
+	}
+}
@@ -0,0 +1,44 @@
+package pacman;
+
+/**
+ * The state encodings a Pacman network can be trained on. Commons derives the
+ * network dimensions from the selected one.
+ */
+public enum StateEncoding {
+
+	/** The value of every cell of the maze, padded to the original input size */
+	GRID(GridEncoder.SIZE, LevelTemplate.N_CELLS) {
+		StateEncoder create() {
+			return new GridEncoder();
+		}
+	},
+
+	/** A few values describing pacman's surroundings, see CompactEncoder */
+	COMPACT(CompactEncoder.SIZE, CompactEncoder.SIZE) {
+		StateEncoder create() {
+			return new CompactEncoder();
+		}
+	};
+
+	private final int size;
+	private final int usedInputs;
+
+	private StateEncoding(int size, int usedInputs) {
+		this.size = size;
+		this.usedInputs = usedInputs;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of inputs, from the first, that can be other than 0. The weights of
+	 * the inputs after them never change a network's output.
+	 */
+	public int getUsedInputs() {
+		return usedInputs;
+	}
+
+	abstract StateEncoder create();
+}
@@ -0,0 +1,123 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The seed and the sequence of actions of one episode, packed with a fixed
+ * number of bits per action. Since the games are deterministic, replaying the
+ * actions on a board created with the same seed reproduces the episode
+ * exactly, without the controller that played it.
+ */
+public class ActionLog {
+
+	private final int seed;
+	private final int firstAction;
+	private final int bitsPerAction;
+	private long[] words = new long[16];
+	private int length;
+
+	/**
+	 * @param seed          seed of the board the episode is played on
+	 * @param firstAction   lowest action value, stored as 0
+	 * @param bitsPerAction bits needed for the number of actions of the game
+	 */
+	public ActionLog(int seed, int firstAction, int bitsPerAction) {
+		if (bitsPerAction <= 0 || bitsPerAction > 32) {
+			throw new IllegalArgumentException("Invalid number of bits per action");
+		}
+		this.seed = seed;
+		this.firstAction = firstAction;
+		this.bitsPerAction = bitsPerAction;
+	}
+
+	public void add(int action) {
+		long bit = (long) length * bitsPerAction;
+		if ((bit + bitsPerAction + 63) / 64 > words.length) {
+			long[] grown = new long[words.length * 2];
+			System.arraycopy(words, 0, grown, 0, words.length);
+			words = grown;
+		}
+		long value = (action - firstAction) & ((1L << bitsPerAction) - 1);
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		words[word] |= value << shift;
+		if (shift + bitsPerAction > 64)
+			words[word + 1] |= value >>> (64 - shift);
+		length++;
+	}
+
+	public int get(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Action " + index + " of " + length);
+		}
+		long bit = (long) index * bitsPerAction;
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		long value = words[word] >>> shift;
+		if (shift + bitsPerAction > 64)
+			value |= words[word + 1] << (64 - shift);
+		return firstAction + (int) (value & ((1L << bitsPerAction) - 1));
+	}
+
+	public int size() {
+		return length;
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	// Returns a controller that plays the given one and appends each of its
+	// moves to this log
+	public GameController record(GameController controller) {
+		return currentState -> {
+			int move = controller.nextMove(currentState);
+			add(move);
+			return move;
+		};
+	}
+
+	// Returns a controller that plays the logged actions in order, ignoring the
+	// state. Once the log is over it keeps returning the first action
+	public GameController replay() {
+		return new GameController() {
+			private int next = 0;
+
+			@Override
+			public int nextMove(int[] currentState) {
+				return next < length ? get(next++) : firstAction;
+			}
+		};
+	}
+
+	public void write(String filename) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filename)))) {
+			out.writeInt(seed);
+			out.writeInt(firstAction);
+			out.writeByte(bitsPerAction);
+			out.writeInt(length);
+			int usedWords = (int) (((long) length * bitsPerAction + 63) / 64);
+			for (int i = 0; i < usedWords; i++)
+				out.writeLong(words[i]);
+		}
+	}
+
+	public static ActionLog read(String filename) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			ActionLog log = new ActionLog(in.readInt(), in.readInt(), in.readByte());
+			log.length = in.readInt();
+			int usedWords = (int) (((long) log.length * log.bitsPerAction + 63) / 64);
+			log.words = new long[Math.max(usedWords, 1)];
+			for (int i = 0; i < usedWords; i++)
+				log.words[i] = in.readLong();
+			return log;
+		}
+	}
+}
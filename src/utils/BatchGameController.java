@@ -0,0 +1,17 @@
+package utils;
+
+// The BatchGameController interface lets a client obtain the next moves of
+// several games with a single call, so that the controller can evaluate them
+// together.
+
+public interface BatchGameController {
+
+	/*
+	 * The states array holds count consecutive game states, each with the state
+	 * size of the game being played. games[k] identifies the game (for example
+	 * the individual of a population) that the k-th state belongs to. The next
+	 * move for the k-th state must be written to moves[k].
+	 */
+	public void nextMoves(int[] states, int[] games, int count, int[] moves);
+
+}
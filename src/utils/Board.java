@@ -3,5 +3,36 @@ package utils;
 public interface Board {
 	public void runSimulation();
 
+	// Continues the simulation from the current (for example restored) state
+	// instead of starting a new game
+	public void resumeSimulation();
+
 	public double getFitness();
+
+	// Game ticks of the current episode, including any that the simulation
+	// skipped over without playing them
+	public int getTicks();
+
+	// Whether the last simulation was stopped by a budget or by cancel() before
+	// the game ended, in which case the fitness only covers the ticks played
+	public boolean isTruncated();
+
+	// Asks a running simulation to stop at the next tick. Can be called from any
+	// thread, and does nothing once the simulation has returned, so that a late
+	// call can't stop the next one
+	public void cancel();
+
+	/*
+	 * Returns a copy of the complete game state, random generator included, as a
+	 * compact array of primitives. The array doesn't refer to the board and can be
+	 * restored on any board of the same game and configuration.
+	 */
+	public int[] snapshot();
+
+	// Replaces the game state by one returned by snapshot()
+	public void restore(int[] snapshot);
+
+	// Returns a headless copy of this board, with the same controller, that
+	// continues from the current state
+	public Board fork();
 }
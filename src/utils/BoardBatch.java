@@ -0,0 +1,80 @@
+package utils;
+
+/**
+ * Plays many boards of the same game together, for example one genome on
+ * several seeds. Every tick the states of the boards still in game are
+ * gathered into one array and the controller chooses all their moves with a
+ * single nextMoves() call, which lets a network evaluate them as one
+ * matrix-matrix product instead of one matrix-vector product per board.
+ * <p>
+ * Each board gets exactly the moves it would get from the same controller on
+ * its own, but ticks that a board's runSimulation() would skip (such as
+ * Breakout's cycle detection) are all played, and wall-clock budgets aren't
+ * checked.
+ * <p>
+ * Nothing in the project plays a genome on several seeds yet, so the batch is
+ * only an API for now, checked against solo runs by the benchmarks module's
+ * tests. It pays off for the Pacman networks, whose batched forward pass is
+ * several times faster per state, but not for Breakout, whose network is too
+ * small for the batch to beat one nextMove() per board.
+ */
+public class BoardBatch {
+
+	private final LockstepBoard[] boards;
+	private final GameController controller;
+	private final int stateSize;
+	private final int[] states;
+	private final int[] moves;
+	// Indices of the boards still in game, in ascending order
+	private final int[] live;
+
+	public BoardBatch(LockstepBoard[] boards, GameController controller) {
+		if (boards.length == 0) {
+			throw new IllegalArgumentException("A batch needs at least one board");
+		}
+		this.boards = boards;
+		this.controller = controller;
+		stateSize = boards[0].getStateSize();
+		for (LockstepBoard board : boards) {
+			if (board.getStateSize() != stateSize) {
+				throw new IllegalArgumentException("Every board of a batch must have the same state size");
+			}
+		}
+		states = new int[boards.length * stateSize];
+		moves = new int[boards.length];
+		live = new int[boards.length];
+	}
+
+	public void runSimulation() {
+		int liveCount = 0;
+		for (int i = 0; i < boards.length; i++) {
+			boards[i].startEpisode();
+			live[liveCount++] = i;
+		}
+		while (true) {
+			// Boards that finished are dropped, keeping the others in order
+			int count = 0;
+			for (int k = 0; k < liveCount; k++) {
+				if (boards[live[k]].isInGame())
+					live[count++] = live[k];
+			}
+			liveCount = count;
+			if (liveCount == 0)
+				return;
+
+			for (int k = 0; k < liveCount; k++)
+				boards[live[k]].writeState(states, k * stateSize);
+			controller.nextMoves(states, stateSize, liveCount, moves);
+			for (int k = 0; k < liveCount; k++)
+				boards[live[k]].advance(moves[k]);
+		}
+	}
+
+	public int size() {
+		return boards.length;
+	}
+
+	public double getFitness(int board) {
+		return boards[board].getFitness();
+	}
+}
@@ -0,0 +1,16 @@
+package utils;
+
+// A board whose episodes can be played a few ticks at a time, so that an
+// evaluation can stop an episode early and carry it on later without
+// replaying the ticks already played.
+
+public interface BudgetedBoard extends Board {
+
+	/*
+	 * Makes runSimulation() and resumeSimulation() stop, truncated, once
+	 * getTicks() reaches maxTicks. Calling resumeSimulation() again after raising
+	 * the budget continues the same episode exactly as if it had never stopped.
+	 * A budget beyond the game's own limit has no effect.
+	 */
+	public void setTickBudget(int maxTicks);
+}
@@ -1,6 +1,6 @@
 package utils;
 
-import pacman.PacmanBoard;
+import pacman.StateEncoding;
 
 public interface Commons {
 
@@ -12,18 +12,52 @@ public interface Commons {
 	public static final int INIT_PADDLE_Y = 360;
 	public static final int INIT_BALL_X = 230;
 	public static final int INIT_BALL_Y = 355;
+	// Sizes of the images in src/resources, which the game logic doesn't load
+	public static final int BALL_SIZE = 5;
+	public static final int PADDLE_WIDTH = 40;
+	public static final int PADDLE_HEIGHT = 10;
+	public static final int BRICK_WIDTH = 40;
+	public static final int BRICK_HEIGHT = 10;
 	public static final int PERIOD = 5;
+	public static final int BREAKOUT_MAX_TIME = 100000;
+	public static final boolean BREAKOUT_CYCLE_DETECTION = true;
+	// Play against a wall of WALL_COLUMNS x WALL_ROWS bricks, which splits the
+	// area of the original 6x5 wall, instead of a single moving brick
+	public static final boolean BREAKOUT_WALL_MODE = false;
+	public static final int WALL_COLUMNS = 6;
+	public static final int WALL_ROWS = 5;
+	public static final int WALL_X = 30;
+	public static final int WALL_Y = 50;
+	public static final int WALL_WIDTH = 240;
+	public static final int WALL_HEIGHT = 50;
 
 	public static final int SEED = 1;
+	// Emit the Java Flight Recorder events of algoritmo (generations and
+	// evaluations, and with the second flag every inference batch) to a recording
+	// started with -XX:StartFlightRecording. When false they're compiled out
+	public static final boolean JFR_EVENTS = false;
+	public static final boolean JFR_INFERENCE_EVENTS = false;
+	// Port of the Prometheus endpoint GeneticAlgorithm serves on localhost while
+	// it runs, 0 for none
+	public static final int METRICS_PORT = 0;
+	// Let the networks update the weighted sums of their hidden layer from the
+	// inputs a board reports as changed instead of recomputing them every tick.
+	// Much faster on the GRID encoding, but the sums are rounded differently from
+	// a full pass, so fitnesses aren't bit-identical to a run without it
+	public static final boolean INCREMENTAL_INFERENCE = false;
 	public static final int BREAKOUT_STATE_SIZE = 7;
 	public static final int BREAKOUT_NUM_ACTIONS = 2;
 	public static final int BREAKOUT_HIDDEN_DIM = Math.round((BREAKOUT_STATE_SIZE + BREAKOUT_NUM_ACTIONS) / 2);
 	public static final int BREAKOUT_NETWORK_SIZE = BREAKOUT_STATE_SIZE * BREAKOUT_HIDDEN_DIM + BREAKOUT_HIDDEN_DIM
 			+ BREAKOUT_HIDDEN_DIM * BREAKOUT_NUM_ACTIONS + BREAKOUT_NUM_ACTIONS;
 
+	// Budget of a single Pacman evaluation, in ticks and in wall-clock time
+	public static final int PACMAN_MAX_STEPS = 100000;
+	public static final long PACMAN_MAX_MILLIS = 10000;
 	public static final int PACMAN_NUM_ACTIONS = 5;
-	public static final int PACMAN_STATE_SIZE = PacmanBoard.N_BLOCKS * PacmanBoard.N_BLOCKS * 2 + 2
-			+ PacmanBoard.MAX_GHOSTS * 2;
+	// GRID gives the networks the whole maze, COMPACT a few values around pacman
+	public static final StateEncoding PACMAN_ENCODING = StateEncoding.GRID;
+	public static final int PACMAN_STATE_SIZE = PACMAN_ENCODING.getSize();
 	public static final int PACMAN_HIDDEN_DIM = Math.round((PACMAN_STATE_SIZE + PACMAN_NUM_ACTIONS) / 2);
 	public static final int PACMAN_NETWORK_SIZE = PACMAN_STATE_SIZE * PACMAN_HIDDEN_DIM + PACMAN_HIDDEN_DIM
 			+ PACMAN_HIDDEN_DIM * PACMAN_NUM_ACTIONS + PACMAN_NUM_ACTIONS;
@@ -10,9 +10,39 @@ public interface GameController {
 	 * as output. The input array represents the current state of the game, and the
 	 * output value represents the next move to be made by the player. The exact
 	 * format and meaning of these values will depend on the specific game being
-	 * played.
+	 * played. The array belongs to the board, which may reuse it for the next
+	 * state: it is only valid during the call and must not be modified.
 	 */
 
 	public int nextMove(int[] currentState);
 
+	/*
+	 * Same as nextMove(int[]), for a board that also knows which values of its
+	 * state may have changed since the state it gave in its previous call:
+	 * changed[0] to changed[changedCount - 1], which may repeat an index or list
+	 * one whose value didn't change. changedCount is -1, and changed may be null,
+	 * when they aren't known, such as on the first tick or after a new level.
+	 * Both arrays belong to the board like currentState. A controller can use
+	 * them to only update what depends on the changed values, as long as it
+	 * recognises the board by its state array; by default they are ignored.
+	 */
+	public default int nextMove(int[] currentState, int[] changed, int changedCount) {
+		return nextMove(currentState);
+	}
+
+	/*
+	 * Batched version of nextMove for count states of stateSize values stored one
+	 * after another in states. The next move for the k-th state must be written
+	 * to moves[k]. Controllers that can evaluate several states at once, such as
+	 * a network doing a matrix-matrix product, override it; by default every
+	 * state is copied out and given to nextMove.
+	 */
+	public default void nextMoves(int[] states, int stateSize, int count, int[] moves) {
+		int[] state = new int[stateSize];
+		for (int k = 0; k < count; k++) {
+			System.arraycopy(states, k * stateSize, state, 0, stateSize);
+			moves[k] = nextMove(state);
+		}
+	}
+
 }
@@ -0,0 +1,23 @@
+package utils;
+
+// A board that can be driven one tick at a time from outside, so that a
+// BoardBatch can gather the states of many boards and ask a controller for all
+// their moves at once.
+
+public interface LockstepBoard extends Board {
+
+	// Starts the episode that runSimulation() would play, without playing it
+	public void startEpisode();
+
+	// Whether the episode has ticks left to play within its step budget
+	public boolean isInGame();
+
+	public int getStateSize();
+
+	// Writes the state the controller would be given for the next tick to
+	// states[offset] to states[offset + getStateSize() - 1]
+	public void writeState(int[] states, int offset);
+
+	// Plays one tick with the given move instead of asking the controller
+	public void advance(int move);
+}
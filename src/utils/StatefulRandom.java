@@ -0,0 +1,49 @@
+package utils;
+
+import java.util.Random;
+
+/**
+ * A java.util.Random that produces exactly the same sequence as Random but
+ * whose internal 48-bit state can be read and written back. The boards use it
+ * so that the RNG can be part of a game state (cycle detection, snapshots).
+ */
+public class StatefulRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long seed;
+
+	public StatefulRandom() {
+		super();
+	}
+
+	public StatefulRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		this.seed = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		seed = (seed * MULTIPLIER + ADDEND) & MASK;
+		return (int) (seed >>> (48 - bits));
+	}
+
+	// Returns the internal (already scrambled) 48-bit state
+	public long getState() {
+		return seed;
+	}
+
+	// Restores a value previously returned by getState()
+	public void setState(long state) {
+		seed = state & MASK;
+	}
+}
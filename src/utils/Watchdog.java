@@ -0,0 +1,32 @@
+package utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels simulations that are still running after a deadline. Cancellation is
+ * cooperative: the board stops at its next tick and reports a truncated
+ * episode. A single daemon thread serves every watched simulation.
+ */
+public class Watchdog {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Simulation watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Calls board.cancel() after millis milliseconds, unless the returned alarm
+	 * is cancelled first, which should be done as soon as the simulation ends
+	 */
+	public ScheduledFuture<?> watch(Board board, long millis) {
+		return scheduler.schedule(board::cancel, millis, TimeUnit.MILLISECONDS);
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+}